@@ -0,0 +1,75 @@
+package com.youzan.maven.plugin.annotation.classreading;
+
+import com.youzan.maven.plugin.benchmark.SyntheticClassTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.annotation.AnnotationAttributes;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micro benchmarks for the attribute extraction of a single annotated class:
+ * {@link AnnotationMetadataReadingVisitor#getAnnotationAttributes(String, boolean)}
+ * and its two steps, {@link AnnotationReadingVisitorUtils#getMergedAnnotationAttributes}
+ * and {@link AnnotationReadingVisitorUtils#convertClassValues}.
+ * <p>Lives in the reader package because the utilities are package-private.
+ *
+ * @author yiji@apache.org
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AnnotationAttributesBenchmark {
+
+    private static final String CLASS_NAME = SyntheticClassTree.BASE_PACKAGE + ".p0.Service0";
+
+    @Param({"false", "true"})
+    public boolean classValuesAsString;
+
+    private ClassLoader classLoader;
+
+    private AnnotationMetadataReadingVisitor metadata;
+
+    private AnnotationAttributes merged;
+
+    @Setup
+    public void setUp() {
+        this.classLoader = AnnotationAttributesBenchmark.class.getClassLoader();
+        byte[] bytes = SyntheticClassTree.classBytes(CLASS_NAME, Runnable.class.getName(), true, true);
+        SimpleMetadataReader reader = new SimpleMetadataReader(new File("Service0.class"), bytes, this.classLoader, false);
+        this.metadata = (AnnotationMetadataReadingVisitor) reader.getAnnotationMetadata();
+        this.merged = AnnotationReadingVisitorUtils.getMergedAnnotationAttributes(
+                this.metadata.attributesMap, this.metadata.metaAnnotationMap, SyntheticClassTree.SERVICE_ANNOTATION);
+    }
+
+    @Benchmark
+    public AnnotationAttributes getAnnotationAttributes() {
+        return this.metadata.getAnnotationAttributes(SyntheticClassTree.SERVICE_ANNOTATION, this.classValuesAsString);
+    }
+
+    @Benchmark
+    public AnnotationAttributes getMergedAnnotationAttributes() {
+        return AnnotationReadingVisitorUtils.getMergedAnnotationAttributes(
+                this.metadata.attributesMap, this.metadata.metaAnnotationMap, SyntheticClassTree.SERVICE_ANNOTATION);
+    }
+
+    @Benchmark
+    public AnnotationAttributes convertClassValues() {
+        return AnnotationReadingVisitorUtils.convertClassValues(
+                CLASS_NAME, this.classLoader, this.merged, this.classValuesAsString);
+    }
+
+}
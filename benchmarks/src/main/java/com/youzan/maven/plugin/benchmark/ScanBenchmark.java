@@ -0,0 +1,113 @@
+package com.youzan.maven.plugin.benchmark;
+
+import com.youzan.maven.plugin.annotation.AnnotationMetadata;
+import com.youzan.maven.plugin.annotation.classreading.MetaAnnotationCache;
+import com.youzan.maven.plugin.annotation.classreading.SimpleMetadataReaderFactory;
+import com.youzan.maven.plugin.scan.AnnotationDescriptorFilter;
+import com.youzan.maven.plugin.scan.ClassFileHandler;
+import com.youzan.maven.plugin.scan.ClassFileScanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the class directory scan end to end over a synthetic class tree:
+ * walking the tree, reading every class file, the constant pool pre-filter,
+ * ASM metadata reading and attribute extraction of the annotated classes.
+ * <p>A new {@link SimpleMetadataReaderFactory} is created per invocation, as
+ * the plugin does per execution, so meta-annotation introspection is included.
+ *
+ * @author yiji@apache.org
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScanBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int classes;
+
+    @Param({"0.05", "0.5"})
+    public double annotatedRatio;
+
+    @Param({"true", "false"})
+    public boolean preFilter;
+
+    @Param({"false", "true"})
+    public boolean bytecodeOnly;
+
+    @Param({"0"})
+    public int threads;
+
+    private File root;
+
+    private int expected;
+
+    private ClassFileScanner scanner;
+
+    private AnnotationDescriptorFilter classFilter;
+
+    private ClassLoader classLoader;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.root = Files.createTempDirectory("dubbo-scan-benchmark").toFile();
+        this.expected = SyntheticClassTree.generate(this.root, this.classes, this.annotatedRatio);
+        this.scanner = new ClassFileScanner(this.threads, new String[] {SyntheticClassTree.BASE_PACKAGE});
+        this.classFilter = (this.preFilter ? new AnnotationDescriptorFilter(SyntheticClassTree.SERVICE_ANNOTATION) : null);
+        this.classLoader = ScanBenchmark.class.getClassLoader();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SyntheticClassTree.delete(this.root);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> scan() throws IOException {
+        final SimpleMetadataReaderFactory factory = (this.bytecodeOnly ?
+                new SimpleMetadataReaderFactory(null, false, new MetaAnnotationCache(this.classLoader)) :
+                new SimpleMetadataReaderFactory(this.classLoader, false, new MetaAnnotationCache()));
+
+        List<Map<String, Object>> services = this.scanner.scan(this.root, new ClassFileHandler<Map<String, Object>>() {
+            @Override
+            public Map<String, Object> handle(File file, String className) throws IOException {
+                byte[] bytes = Files.readAllBytes(file.toPath());
+                if (classFilter != null && !classFilter.matches(bytes)) {
+                    return null;
+                }
+                AnnotationMetadata metadata = factory.getMetadataReader(file, bytes).getAnnotationMetadata();
+                if (!metadata.isAnnotated(SyntheticClassTree.SERVICE_ANNOTATION)) {
+                    return null;
+                }
+                return metadata.getAnnotationAttributes(SyntheticClassTree.SERVICE_ANNOTATION, bytecodeOnly);
+            }
+        });
+
+        if (services.size() != this.expected) {
+            throw new IllegalStateException("Found " + services.size() + " services, expected " + this.expected);
+        }
+        return services;
+    }
+
+}
@@ -0,0 +1,134 @@
+package com.youzan.maven.plugin.benchmark;
+
+import org.springframework.asm.AnnotationVisitor;
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.FieldVisitor;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.Type;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Generates trees of compiled classes, a configurable share of which carry the
+ * Dubbo service annotation, so the scan can be measured without a real project.
+ * <p>The classes are laid out like a {@code target/classes} directory: a fixed
+ * number of classes per package, every class with a constructor, a field and an
+ * accessor so the reader has method bodies to skip.
+ *
+ * @author yiji@apache.org
+ */
+public final class SyntheticClassTree {
+
+    public static final String SERVICE_ANNOTATION = "com.youzan.api.rpc.annotation.Service";
+
+    public static final String BASE_PACKAGE = "com.youzan.bench";
+
+    private static final int CLASSES_PER_PACKAGE = 200;
+
+    private SyntheticClassTree() {
+    }
+
+    /**
+     * Write {@code classes} class files below {@code root}.
+     *
+     * @param root           the class output directory
+     * @param classes        the number of classes to generate
+     * @param annotatedRatio the share of classes annotated as services, between 0 and 1
+     * @return the number of annotated classes written
+     */
+    public static int generate(File root, int classes, double annotatedRatio) throws IOException {
+        int annotated = 0;
+        for (int i = 0; i < classes; i++) {
+            String packageName = BASE_PACKAGE + ".p" + (i / CLASSES_PER_PACKAGE);
+            boolean service = isAnnotated(i, annotatedRatio);
+            String className = packageName + (service ? ".Service" : ".Component") + i;
+            byte[] bytes = classBytes(className, packageName + ".api.Api" + i, service, false);
+
+            File file = new File(root, className.replace('.', File.separatorChar) + ".class");
+            File directory = file.getParentFile();
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Failed to create directory '" + directory + "'");
+            }
+            Files.write(file.toPath(), bytes);
+            if (service) {
+                annotated++;
+            }
+        }
+        return annotated;
+    }
+
+    /**
+     * Spread the annotated classes evenly over the tree instead of clustering them.
+     */
+    static boolean isAnnotated(int index, double annotatedRatio) {
+        return (long) ((index + 1) * annotatedRatio) > (long) (index * annotatedRatio);
+    }
+
+    /**
+     * Compile a single class.
+     *
+     * @param className      the fully qualified class name
+     * @param interfaceName  the interface the class implements
+     * @param annotated      whether to add the service annotation
+     * @param interfaceClass whether the annotation names the interface as {@code interfaceClass}
+     *                       (a class value) rather than {@code interfaceName} (a string)
+     */
+    public static byte[] classBytes(String className, String interfaceName, boolean annotated, boolean interfaceClass) {
+        String internalName = className.replace('.', '/');
+        ClassWriter writer = new ClassWriter(0);
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, internalName, null,
+                "java/lang/Object", new String[] {interfaceName.replace('.', '/')});
+
+        if (annotated) {
+            AnnotationVisitor annotation = writer.visitAnnotation(
+                    "L" + SERVICE_ANNOTATION.replace('.', '/') + ";", true);
+            if (interfaceClass) {
+                annotation.visit("interfaceClass", Type.getObjectType(interfaceName.replace('.', '/')));
+            } else {
+                annotation.visit("interfaceName", interfaceName);
+            }
+            annotation.visit("version", "1.0.0");
+            annotation.visit("group", "benchmark");
+            annotation.visitEnd();
+        }
+
+        FieldVisitor field = writer.visitField(Opcodes.ACC_PRIVATE, "name", "Ljava/lang/String;", null, null);
+        field.visitEnd();
+
+        MethodVisitor constructor = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(Opcodes.ALOAD, 0);
+        constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        constructor.visitInsn(Opcodes.RETURN);
+        constructor.visitMaxs(1, 1);
+        constructor.visitEnd();
+
+        MethodVisitor getter = writer.visitMethod(Opcodes.ACC_PUBLIC, "getName", "()Ljava/lang/String;", null, null);
+        getter.visitCode();
+        getter.visitVarInsn(Opcodes.ALOAD, 0);
+        getter.visitFieldInsn(Opcodes.GETFIELD, internalName, "name", "Ljava/lang/String;");
+        getter.visitInsn(Opcodes.ARETURN);
+        getter.visitMaxs(1, 1);
+        getter.visitEnd();
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    /**
+     * Delete a generated tree.
+     */
+    public static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+}
@@ -1,42 +1,82 @@
 package com.youzan;
 
-import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.serializer.SerializerFeature;
-
+import com.youzan.maven.plugin.annotation.classreading.ClassFileBuffer;
+import com.youzan.maven.plugin.annotation.classreading.MetaAnnotationCache;
 import com.youzan.maven.plugin.annotation.classreading.MetadataReader;
-import com.youzan.maven.plugin.annotation.classreading.SimpleMetadataReader;
-
-import com.esotericsoftware.yamlbeans.YamlConfig;
-import com.esotericsoftware.yamlbeans.YamlException;
-import com.esotericsoftware.yamlbeans.YamlWriter;
+import com.youzan.maven.plugin.annotation.classreading.SimpleMetadataReaderFactory;
+import com.youzan.maven.plugin.descriptor.BinaryDescriptorWriter;
+import com.youzan.maven.plugin.descriptor.ContentEncoding;
+import com.youzan.maven.plugin.descriptor.ServiceDescriptorWriter;
+import com.youzan.maven.plugin.metrics.CountingClassLoader;
+import com.youzan.maven.plugin.metrics.ScanMetrics;
+import com.youzan.maven.plugin.metrics.ScanReport;
+import com.youzan.maven.plugin.placeholder.PlaceholderResolver;
+import com.youzan.maven.plugin.property.PropertySource;
+import com.youzan.maven.plugin.property.PropertySources;
+import com.youzan.maven.plugin.scan.AnnotationDescriptorFilter;
+import com.youzan.maven.plugin.scan.ClassHierarchyIndex;
+import com.youzan.maven.plugin.scan.ClassFileHandler;
+import com.youzan.maven.plugin.scan.ClassFileScanner;
+import com.youzan.maven.plugin.scan.JarClassScanner;
+import com.youzan.maven.plugin.scan.JarEntryHandler;
+import com.youzan.maven.plugin.scan.ScanIndex;
+import com.youzan.maven.plugin.scan.ServiceAnnotationMatcher;
+import com.youzan.maven.plugin.scan.ServiceDescriptor;
+import com.youzan.maven.plugin.scan.SessionScanCache;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.project.MavenProject;
 import org.springframework.util.StringUtils;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 
 /**
  * Find annotationNames and generate k8s file descriptors.
  *
  * @author yiji@apache.org
  */
-@Mojo(name = "service", defaultPhase = LifecyclePhase.PACKAGE)
+@Mojo(name = "service", defaultPhase = LifecyclePhase.PACKAGE, requiresDependencyResolution = ResolutionScope.RUNTIME)
 public class DubboServiceVisitor extends AbstractMojo {
 
     /**
@@ -75,6 +115,16 @@ public class DubboServiceVisitor extends AbstractMojo {
     @Parameter(defaultValue = "daily", property = "environment")
     private String environment;
 
+    /**
+     * Environments to generate descriptors for from a single scan, separated by commas,
+     * eg: daily,qa,prod. Overrides environment. Each descriptor is resolved against the
+     * profile of its environment and named after fileName and binaryFileName with the
+     * environment appended, eg: dubbo-service-prod.yaml. Descriptors are written in parallel.
+     * Implies usePropertyFile.
+     */
+    @Parameter(defaultValue = "", property = "environments")
+    private String environments;
+
     /**
      * Need to find service package names, multiple values can be separated by commas.
      */
@@ -94,7 +144,7 @@ public class DubboServiceVisitor extends AbstractMojo {
     private String applicationName;
 
     /**
-     * use properties file, eg: application.properties
+     * use configuration files, eg: application.properties, application-daily.yml
      */
     @Parameter(defaultValue = "false", property = "usePropertyFile")
     private boolean usePropertyFile;
@@ -108,13 +158,100 @@ public class DubboServiceVisitor extends AbstractMojo {
     @Parameter(defaultValue = "", property = "forceGenerate")
     private String forceGenerate;
 
+    /**
+     * Number of threads used to parse class files, 0 means one thread per available processor.
+     */
+    @Parameter(defaultValue = "0", property = "scanThreads")
+    private int scanThreads;
+
+    /**
+     * Skip class files whose constant pool does not reference any of the service annotations
+     * before parsing them, unless the class carries an annotation meta-annotated with one of them.
+     */
+    @Parameter(defaultValue = "true", property = "preFilter")
+    private boolean preFilter;
+
+    /**
+     * Only parse class files that changed since the previous build, see {@link #indexFile}.
+     */
+    @Parameter(defaultValue = "true", property = "incremental")
+    private boolean incremental;
+
+    /**
+     * Fingerprints of the scanned class files and their services, used by incremental scans.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/dubbo-service.idx", property = "indexFile")
+    private File indexFile;
+
+    /**
+     * Read annotation metadata from bytecode only, never loading annotation, enum or class
+     * values through the plugin class loader. Enum and class values are kept as names.
+     */
+    @Parameter(defaultValue = "false", property = "bytecodeOnly")
+    private boolean bytecodeOnly;
+
+    /**
+     * Dependencies to scan for services as well, comma separated 'groupId:artifactId' patterns
+     * where '*' matches any characters, eg: com.youzan:*-biz. A pattern without ':' matches the artifactId.
+     */
+    @Parameter(defaultValue = "", property = "scanDependencies")
+    private String scanDependencies;
+
+    /**
+     * Services found in dependency jars, cached by jar checksum for incremental scans.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/dubbo-service-jars", property = "jarIndexDir")
+    private File jarIndexDirectory;
+
+    /**
+     * Encoding of the service list annotation: auto to keep it as plain JSON unless it exceeds
+     * the k8s annotation size limit, or identity, snappy, deflate. Compressed lists are stored
+     * base64 encoded and named by a 'content-encoding' annotation. Except with identity, a list
+     * still too large is split over several Service objects listed by 'content-manifest'.
+     * Auto holds the service list in memory up to the size limit and all of it past the limit,
+     * as it must be complete to be compressed; identity streams the part past the limit.
+     */
+    @Parameter(defaultValue = "auto", property = "contentEncoding")
+    private String contentEncoding;
+
+    /**
+     * Also write the services as a compact binary descriptor with this name next to the
+     * k8s file descriptor, readable by BinaryDescriptorReader, eg: dubbo-service.bin
+     */
+    @Parameter(defaultValue = "", property = "binaryFileName")
+    private String binaryFileName;
+
+    /**
+     * Also write a JSON report of the scan with this name next to the k8s file descriptor:
+     * class and service counts, descriptor sizes, time per phase and the highest heap usage of the JVM.
+     * Empty to disable.
+     */
+    @Parameter(defaultValue = "dubbo-service-scan-report.json", property = "scanReportFileName")
+    private String scanReportFileName;
+
     @Parameter(defaultValue = "${project}", readonly = true, required = true)
     private MavenProject project;
 
+    @Parameter(defaultValue = "${plugin}", readonly = true)
+    private PluginDescriptor plugin;
+
+    @Parameter(defaultValue = "${session}", readonly = true, required = true)
+    private MavenSession session;
+
     private String[] packageToScans;
-    private Properties properties;
-    private Properties globalProperties;
-    private List<MetadataReader> foundAnnotation;
+    private List<Environment> targetEnvironments;
+    private List<ServiceDescriptor> foundAnnotation;
+    private SimpleMetadataReaderFactory metadataReaderFactory;
+    private ClassHierarchyIndex classHierarchy;
+    private AnnotationDescriptorFilter classFilter;
+    private ServiceAnnotationMatcher serviceMatcher;
+    private ScanMetrics metrics;
+    private ScanReport report;
+    private URLClassLoader resourceLoader;
+    private URLClassLoader classPathLoader;
+    private String classPathFingerprint;
+    private SessionScanCache sessionCache;
+    private ContentEncoding serviceContentEncoding;
 
     private String[] annotationNames = {
             "com.youzan.api.rpc.annotation.Service",
@@ -122,12 +259,80 @@ public class DubboServiceVisitor extends AbstractMojo {
             "com.youzan.api.rpc.annotation.ExtensionService"
     };
 
-    private Map<String, Object> annotationDefaultValues;
+    /**
+     * Default values of the service annotation attributes, shared by all executions.
+     */
+    private static final Map<String, Object> annotationDefaultValues;
+
+    static {
+        Map<String, Object> defaults = new HashMap<>();
+        defaults.put("interfaceClass", void.class);
+        defaults.put("interfaceName", "");
+        defaults.put("version", "");
+        defaults.put("tag", "");
+        defaults.put("group", "");
+        defaults.put("value", "");
+        defaults.put("path", "");
+        defaults.put("export", false);
+        defaults.put("token", "");
+        defaults.put("deprecated", false);
+        defaults.put("dynamic", false);
+        defaults.put("accesslog", "");
+        defaults.put("executes", 0);
+        defaults.put("register", false);
+        defaults.put("weight", 0);
+        defaults.put("document", "");
+        defaults.put("delay", 0);
+        defaults.put("local", "");
+        defaults.put("stub", "");
+        defaults.put("cluster", "");
+        defaults.put("proxy", "");
+        defaults.put("connections", 0);
+        defaults.put("callbacks", 0);
+        defaults.put("onconnect", "");
+        defaults.put("ondisconnect", "");
+        defaults.put("owner", "");
+        defaults.put("layer", "");
+        defaults.put("retries", 0);
+        defaults.put("loadbalance", "");
+        defaults.put("async", false);
+        defaults.put("actives", 0);
+        defaults.put("sent", false);
+        defaults.put("mock", "");
+        defaults.put("validation", "");
+        defaults.put("timeout", 0);
+        defaults.put("cache", "");
+        defaults.put("filter", new String[0]);
+        defaults.put("listener", new String[0]);
+        defaults.put("parameters", new String[0]);
+        defaults.put("application", "");
+        defaults.put("module", "");
+        defaults.put("provider", "");
+        defaults.put("protocol", new String[0]);
+        defaults.put("monitor", "");
+        defaults.put("registry", new String[0]);
+        annotationDefaultValues = Collections.unmodifiableMap(defaults);
+    }
 
     public void execute() throws MojoExecutionException {
-        if (prepareConfiguation()) {
-            findAnnotations();
-            export();
+        this.metrics = new ScanMetrics(project != null ? project.getArtifactId() : "");
+        try {
+            ScanMetrics.PhaseTimer configure = metrics.start(ScanMetrics.Phase.CONFIGURE);
+            boolean prepared = prepareConfiguation();
+            configure.stop();
+            if (prepared) {
+                metrics.startHeapTracking();
+                findAnnotations();
+                ScanMetrics.PhaseTimer export = metrics.start(ScanMetrics.Phase.EXPORT);
+                export();
+                export.stop();
+                getLog().info("Scan summary: " + metrics.summary());
+                writeScanReport();
+            }
+        } finally {
+            metrics.stopHeapTracking();
+            closeResourceLoader();
+            ClassFileBuffer.release();
         }
     }
 
@@ -169,51 +374,113 @@ public class DubboServiceVisitor extends AbstractMojo {
                     + "outputDirectory '" + (f == null ? "" : f.getAbsolutePath()) + "'");
         }
 
-        Path path = Paths.get(f.getAbsolutePath(), outputFileName);
+        this.sessionCache = SessionScanCache.forSession(session.getRequest());
+        this.targetEnvironments = new ArrayList<>();
+        for (String name : environmentNames()) {
+            PropertySources propertySources = loadPropertySources(name);
+            Environment target = new Environment(name,
+                    environmentFileName(outputFileName, name), environmentFileName(binaryFileName, name),
+                    propertySources, new PlaceholderResolver(propertySources));
+            targetEnvironments.add(target);
+        }
 
-        this.properties = new Properties();
-        this.globalProperties = new Properties();
+        if (!StringUtils.hasText(packageToScan)) {
+            throw new MojoExecutionException("packageToScan is required, packageToScan is '" + (packageToScan == null ? "" : packageToScan) + "'");
+        }
 
-        if (usePropertyFile) {
-            if (Files.exists(path)) {
-                getLog().warn("The file '" + outputFileName + "' already exists in path '" + path + "', the file will be overwritten.");
-                try {
-                    Files.delete(path);
-                } catch (IOException e) {
-                    throw new MojoExecutionException("Failed to delete file '" + path + "'", e);
-                }
-            }
+        for (Environment target : targetEnvironments) {
+            target.applicationName = resolveApplicationName(target);
+        }
 
-            path = Paths.get(searchDirectory.getAbsolutePath(), prefixOfConfiguation + environment + ".properties");
-            if (!Files.exists(path) && usePropertyFile) {
-                throw new MojoExecutionException("Unable to find configuration  file '" + path + "'");
-            }
+        if (StringUtils.hasText(scanReportFileName)) {
+            this.report = new ScanReport(plugin != null ? plugin.getVersion() : null,
+                    project.getGroupId() + ":" + project.getArtifactId(), project.getVersion());
+        }
 
+        this.packageToScans = packageToScan.split(",");
+        this.foundAnnotation = new ArrayList<>();
+        this.serviceMatcher = new ServiceAnnotationMatcher(annotationNames, packageToScans);
+        try {
+            this.serviceContentEncoding = ContentEncoding.forName(contentEncoding);
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+        if (bytecodeOnly) {
+            /**
+             * Only used to locate annotation class files, annotations declared by the module itself included.
+             */
             try {
-                properties.load(Files.newBufferedReader(path));
-            } catch (IOException e) {
-                throw new MojoExecutionException("Failed to load configuration  file '" + path + "'");
+                this.resourceLoader = new URLClassLoader(new URL[]{searchDirectory.toURI().toURL()},
+                        DubboServiceVisitor.class.getClassLoader());
+            } catch (MalformedURLException e) {
+                throw new MojoExecutionException("Invalid searchDir '" + searchDirectory + "'", e);
             }
+        }
+        this.classPathLoader = newClassPathLoader();
+        this.classPathFingerprint = ScanIndex.fingerprint(dependencyFiles());
+        if (bytecodeOnly) {
+            this.metadataReaderFactory = new SimpleMetadataReaderFactory(null, false, new MetaAnnotationCache(resourceLoader),
+                    classPathLoader);
+        } else {
+            this.metadataReaderFactory = new SimpleMetadataReaderFactory(
+                    new CountingClassLoader(DubboServiceVisitor.class.getClassLoader(), metrics), false,
+                    sessionCache.getMetaAnnotationCache(), classPathLoader);
+        }
+        this.classHierarchy = new ClassHierarchyIndex(metadataReaderFactory);
+        this.classFilter = preFilter ? new AnnotationDescriptorFilter(annotationNames,
+                new AnnotationDescriptorFilter.MetaAnnotationResolver() {
+                    @Override
+                    public Set<String> getMetaAnnotationTypes(String annotationName) {
+                        return metadataReaderFactory.getMetaAnnotationCache()
+                                .getMetaAnnotationTypes(annotationName, metadataReaderFactory.getClassLoader());
+                    }
+                }) : null;
 
-            path = Paths.get(searchDirectory.getAbsolutePath(), "application.properties");
-            try {
-                if (Files.exists(path)) {
-                    globalProperties.load(Files.newBufferedReader(path));
-                }
-            } catch (IOException ignored) {
+        return true;
+    }
+
+    /**
+     * Locates the class files of the module and its dependencies by name, never defines a class.
+     */
+    private URLClassLoader newClassPathLoader() throws MojoExecutionException {
+        List<URL> urls = new ArrayList<>();
+        try {
+            urls.add(searchDirectory.toURI().toURL());
+            for (File file : dependencyFiles()) {
+                urls.add(file.toURI().toURL());
             }
+        } catch (MalformedURLException e) {
+            throw new MojoExecutionException("Invalid class path of '" + searchDirectory + "'", e);
         }
+        return new URLClassLoader(urls.toArray(new URL[urls.size()]), null);
+    }
 
-
-        if (!StringUtils.hasText(packageToScan)) {
-            throw new MojoExecutionException("packageToScan is required, packageToScan is '" + (packageToScan == null ? "" : packageToScan) + "'");
+    /**
+     * The existing files of the project dependencies, in resolution order.
+     */
+    private List<File> dependencyFiles() {
+        List<File> files = new ArrayList<>();
+        if (project.getArtifacts() != null) {
+            for (Artifact artifact : project.getArtifacts()) {
+                File file = artifact.getFile();
+                if (file != null && file.exists()) {
+                    files.add(file);
+                }
+            }
         }
+        return files;
+    }
 
-        if (applicationName == null || applicationName.length() <= 0) {
+    /**
+     * Return the configured application name, or look it up in the properties of the environment.
+     */
+    private String resolveApplicationName(Environment target) throws MojoExecutionException {
+        String name = applicationName;
+        if (name == null || name.length() <= 0) {
             if (applicationNameKey != null &&
-                    ((applicationName = getProperty(applicationNameKey) == null
-                            ? getProperty(APP)
-                            : getProperty(applicationNameKey)) == null)) {
+                    ((name = getProperty(target, applicationNameKey) == null
+                            ? getProperty(target, APP)
+                            : getProperty(target, applicationNameKey)) == null)) {
 
                 if (project != null) {
                     MavenProject parent = project;
@@ -221,203 +488,372 @@ public class DubboServiceVisitor extends AbstractMojo {
                         if (parent.getModel() != null
                                 && parent.getModel().getPackaging() != null
                                 && "pom".equals(parent.getModel().getPackaging())) {
-                            applicationName = parent.getModel().getArtifactId();
-                            getLog().warn("Detected project name '" + applicationName + "' from " + parent.getModel().getPomFile().toString());
+                            name = parent.getModel().getArtifactId();
+                            getLog().warn("Detected project name '" + name + "' from " + parent.getModel().getPomFile().toString());
                             break;
                         }
                         parent = parent.getParent();
                     }
                 }
 
-                if (applicationName == null || applicationName.length() <= 0) {
+                if (name == null || name.length() <= 0) {
                     throw new MojoExecutionException("'" + applicationNameKey + "' or 'app' not found.");
                 }
             }
         }
+        return name;
+    }
 
-        this.packageToScans = packageToScan.split(",");
-        this.foundAnnotation = new ArrayList<>();
-        this.annotationDefaultValues = new HashMap<>();
-
-        prepareAnnotationValues();
-
-        return true;
+    /**
+     * Return the resolved value of a property of the environment, failing on a circular placeholder.
+     */
+    private String getProperty(Environment target, String key) throws MojoExecutionException {
+        try {
+            return target.getProperty(key);
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException("Failed to resolve property '" + key + "' of environment '"
+                    + target.name + "', " + e.getMessage(), e);
+        }
     }
 
     private void findAnnotations() throws MojoExecutionException {
+        ScanMetrics.PhaseTimer timer = metrics.start(ScanMetrics.Phase.CLASSES);
         findClassFiles(searchDirectory);
+        timer.stop();
+        timer = metrics.start(ScanMetrics.Phase.DEPENDENCIES);
+        findDependencyClasses();
+        timer.stop();
+        metrics.add(ScanMetrics.Counter.SERVICES, foundAnnotation.size());
+        if (classFilter != null) {
+            long skipped = metrics.get(ScanMetrics.Counter.CLASSES_SKIPPED);
+            getLog().info("Pre-filter skipped " + skipped + " of "
+                    + (skipped + metrics.get(ScanMetrics.Counter.CLASSES_PARSED)) + " class files.");
+            if (!classFilter.getUnresolvedTypes().isEmpty()) {
+                getLog().debug("Pre-filter kept classes annotated with types it could not resolve: "
+                        + StringUtils.collectionToDelimitedString(classFilter.getUnresolvedTypes(), ", ") + ".");
+            }
+        }
+        getLog().debug("Class name table holds " + metadataReaderFactory.getClassNames().size() + " names.");
+        // the names retained by the found services and the hierarchy are shared already
+        metadataReaderFactory.getClassNames().clear();
+        getLog().debug("Class hierarchy index holds " + classHierarchy.size() + " classes, "
+                + classHierarchy.getReadOnDemand() + " read by name.");
     }
 
     private void export() throws MojoExecutionException {
-        writeToFile();
-    }
-
-    private void writeToFile() throws MojoExecutionException {
-        YamlWriter writer = null;
-        Path output = Paths.get(outputDirectory.getAbsolutePath(), outputFileName);
-        Map pair = new LinkedHashMap();
-        try {
-
+        // do nothing
+        if (foundAnnotation.isEmpty() && (forceGenerate == null || forceGenerate.isEmpty())) {
             removeIfNeed();
-            // do nothing
-            if (foundAnnotation.isEmpty() && (forceGenerate == null || forceGenerate.isEmpty())) {
-                return;
-            }
-
-            // create new file for annotation found.
-            createIfNeed();
-
-            getLog().info("Generating service information, file '" + output + "'.");
-            writer = new YamlWriter(new FileWriter(Paths.get(outputDirectory.getAbsolutePath(), outputFileName).toFile()));
-            writer.getConfig().writeConfig.setWriteRootTags(false);
-            writer.getConfig().writeConfig.setWriteClassname(YamlConfig.WriteClassName.NEVER);
-            List<String> unresolved = new ArrayList<>();
+            return;
+        }
 
-            pair.put("kind", "Service");
-            pair.put("apiVersion", "v1");
-            pair.put("metadata", new LinkedHashMap());
-            pair.put("spec", new LinkedHashMap());
+        if (targetEnvironments.size() == 1) {
+            writeToFile(targetEnvironments.get(0));
+            return;
+        }
 
-            Map<String, Boolean> cachePorts = new HashMap<>();
+        /**
+         * The scan result is shared read-only, every environment resolves its own copy of the attributes.
+         */
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(targetEnvironments.size(), Runtime.getRuntime().availableProcessors()), new ThreadFactory() {
+                    private final AtomicInteger counter = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "dubbo-export-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        try {
+            List<Future<Void>> futures = new ArrayList<>(targetEnvironments.size());
+            for (final Environment target : targetEnvironments) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws MojoExecutionException {
+                        writeToFile(target);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                await(future);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-            List<Map<String, String>> annotationList = new ArrayList<Map<String, String>>();
-            /** metadata configuration*/
-            {
-                Map metadata = (Map) pair.get("metadata");
-                metadata.put("name", applicationName /*serviceName*/);
+    private void await(Future<Void> future) throws MojoExecutionException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while generating service information", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof MojoExecutionException) {
+                throw (MojoExecutionException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
             }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new MojoExecutionException("Failed to generate service information", cause);
+        }
+    }
 
-            /** spec configuration*/
-            Map spec = (Map) pair.get("spec");
-            {
-                spec.put("selector", new LinkedHashMap());
-                spec.put("ports", new ArrayList());
+    private void writeScanReport() {
+        if (report == null) {
+            return;
+        }
+        File file = new File(outputDirectory, scanReportFileName);
+        try {
+            report.write(file, metrics);
+            getLog().debug("Scan report written to '" + file + "'.");
+        } catch (IOException e) {
+            getLog().warn("Failed to save scan report '" + file + "'.", e);
+        }
+    }
 
-                /** selector configuration*/
-                {
-                    Map selector = (Map) spec.get("selector");
-                    selector.put("app", applicationName);
-                }
+    private void recordDescriptor(Environment target, Path output, ServiceDescriptorWriter writer) {
+        if (report != null) {
+            report.addDescriptor(target.name, output.getFileName().toString(), writer.getServiceCount(),
+                    writer.getRawContentLength(), writer.getContentLength(), writer.getContentEncoding().getName(),
+                    writer.getShardCount(), output.toFile().length());
+        }
+    }
 
-                for (MetadataReader reader : foundAnnotation) {
-                    for (String annotation : annotationNames) {
-                        Map<String, Object> attributes = reader.getAnnotationMetadata().getAnnotationAttributes(annotation);
-                        if (attributes != null) {
+    private void writeToFile(Environment target) throws MojoExecutionException {
+        String outputFileName = target.outputFileName;
+        String applicationName = target.applicationName;
+        Path output = Paths.get(outputDirectory.getAbsolutePath(), outputFileName);
 
-                            /** annotation configuration*/
-                            {
+        Path temporary = Paths.get(outputDirectory.getAbsolutePath(), "." + outputFileName + ".tmp");
+        MessageDigest digest = newDigest();
+        digest.update((DIGEST_VERSION + "|" + outputFileName + "|").getBytes(StandardCharsets.UTF_8));
 
-                                Map<String, String> annotationMap = new LinkedHashMap<>();
+        Map<String, String> ports = new LinkedHashMap<>();
+        BinaryDescriptorWriter binary = StringUtils.hasText(target.binaryFileName)
+                ? new BinaryDescriptorWriter(applicationName) : null;
+        ServiceDescriptorWriter written = null;
+        try (ServiceDescriptorWriter writer = new ServiceDescriptorWriter(FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE), digest,
+                serviceContentEncoding, MAX_CONTENT_SIZE)) {
 
-                                annotationMap.put("interfaceClass", reader.getClassMetadata().getInterfaceNames()[0]);
-                                appendAnnotations(annotationMap, attributes, annotation);
+            /** metadata configuration*/
+            writer.writeHeader(applicationName /*serviceName*/);
 
-                                annotationList.add(annotationMap);
+            for (ServiceDescriptor entry : foundAnnotation) {
+                /**
+                 * The first interface that is not a JDK or Spring type, declared by the class or else by its
+                 * closest super class, looked up in this build since a super class may change on its own.
+                 */
+                String interfaceName = classHierarchy.findServiceInterface(entry.getClassName());
+                if (interfaceName == null) {
+                    throw new MojoExecutionException("Failed to resolve the service interface of class '"
+                            + entry.getClassName() + "', it implements no interface outside the JDK and Spring"
+                            + " or one of its super classes could not be read.");
+                }
+                for (String annotation : annotationNames) {
+                    long start = metrics.begin();
+                    Map<String, Object> attributes = resolveAttributes(entry.getAnnotationAttributes(annotation), target.placeholderResolver);
+                    metrics.end(ScanMetrics.Step.RESOLVE, start);
+                    if (attributes != null) {
+
+                        /** annotation configuration*/
+                        {
+                            Map<String, String> annotationMap = new LinkedHashMap<>();
+
+                            annotationMap.put("interfaceClass", interfaceName);
+                            appendAnnotations(annotationMap, attributes, annotation);
+
+                            writer.writeService(annotationMap);
+                            if (binary != null) {
+                                binary.addService(annotationMap);
                             }
+                        }
 
-                            /** ports configuration*/
-                            {
-                                List ports = (List) spec.get("ports");
-
-                                String[] protocols = (String[]) attributes.get("protocol");
-                                for (String name : protocols) {
-
-                                    if (!cachePorts.containsKey(name)) {
-                                        Map port = new LinkedHashMap();
-                                        port.put("protocol", "TCP");
-                                        port.put("port", detectPort(name));
-                                        ports.add(port);
-
-                                        cachePorts.put(name, true);
-                                    }
-
+                        /** ports configuration*/
+                        {
+                            String[] protocols = (String[]) attributes.get("protocol");
+                            for (String name : protocols != null ? protocols : new String[0]) {
+                                if (!ports.containsKey(name)) {
+                                    ports.put(name, detectPort(name, target));
                                 }
                             }
+                        }
 
-                            getLog().info("found service '" + serviceName(reader, attributes) + "'");
+                        if (targetEnvironments.size() == 1) {
+                            getLog().info("found service '" + serviceName(interfaceName, attributes) + "'");
+                        } else {
+                            getLog().debug("found service '" + serviceName(interfaceName, attributes) + "' for " + target.name);
                         }
                     }
                 }
-
-                if (!autoLoadblance) {
-                    spec.put("clusterIP", "None");
-                }
             }
 
             {
                 // 添加静态服务暴露
-                appendUserDefindService(annotationList, spec, cachePorts);
+                appendUserDefindService(writer, binary, ports, target);
             }
 
-            {
-                // convert annotations to json and compress
-                Map metadata = (Map) pair.get("metadata");
-                Map<String, String> annotations = new LinkedHashMap<>();
-                // annotations.put("content-encoding", "snappy");
-                String content = JSON.toJSONString(annotationList, SerializerFeature.QuoteFieldNames);
-
-                if (content.length() > 255 * 1024) {
-                    getLog().warn("Two many services found, max size: " + (255 * 1024) + " byte, current : " + content.length() + " byte.");
-                }
+            /** spec configuration*/
+            writer.writeSpec(applicationName, ports, !autoLoadblance);
 
-                annotations.put("content", content);
-                metadata.put("annotations", annotations);
+            if (writer.getContentEncoding().isCompressed()) {
+                getLog().info("Service information encoded with " + writer.getContentEncoding().getName()
+                        + ", " + writer.getContentLength() + " byte.");
+            }
+            if (writer.getShardCount() > 1) {
+                getLog().info("Service information split into " + writer.getShardCount()
+                        + " Service objects to stay below " + MAX_CONTENT_SIZE + " byte each.");
+            }
+            if (writer.getContentLength() > MAX_CONTENT_SIZE) {
+                getLog().warn("Two many services found, max size: " + MAX_CONTENT_SIZE + " byte, current : " + writer.getContentLength() + " byte."
+                        + (writer.getContentEncoding() == ContentEncoding.IDENTITY
+                        ? " Set contentEncoding to auto to compress or split the service list." : ""));
             }
+            written = writer;
+        } catch (MojoExecutionException e) {
+            deleteQuietly(temporary);
+            throw e;
         } catch (IOException e) {
-            throw new MojoExecutionException("Failed to open file '" + output + "'", e);
-        } finally {
-            try {
-                if (!foundAnnotation.isEmpty()
-                        /**
-                         * Force file descriptor generation based on user-specified module
-                         */
-                        || (forceGenerate != null && forceGenerate.length() > 0)) {
-                    writer.write(pair);
-                    writer.close();
-                    getLog().info(foundAnnotation.size() + (foundAnnotation.size() > 1 ? " services" : " service")
-                            + " generated successfully, file '" + output + "'");
-                }
-            } catch (YamlException e) {
-                throw new MojoExecutionException("Failed to save file '" + output + "'", e);
+            deleteQuietly(temporary);
+            throw new MojoExecutionException("Failed to save file '" + output + "', " + e.getMessage(), e);
+        } catch (IllegalArgumentException e) {
+            deleteQuietly(temporary);
+            throw new MojoExecutionException("Failed to resolve service attributes, " + e.getMessage(), e);
+        }
+        reportUnresolvedPlaceholders(target);
+
+        if (binary != null) {
+            writeBinaryDescriptor(binary, target.binaryFileName);
+        }
+
+        String hex = toHex(digest.digest());
+        if (isUpToDate(output, hex, outputFileName)) {
+            deleteQuietly(temporary);
+            getLog().info("Service information is up to date, file '" + output + "'.");
+            recordDescriptor(target, output, written);
+            return;
+        }
+
+        getLog().info("Generating service information, file '" + output + "'.");
+        try {
+            Files.move(temporary, output, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            deleteQuietly(temporary);
+            throw new MojoExecutionException("Failed to save file '" + output + "'", e);
+        }
+        saveDigest(output, hex, outputFileName);
+        recordDescriptor(target, output, written);
+
+        getLog().info(foundAnnotation.size() + (foundAnnotation.size() > 1 ? " services" : " service")
+                + " generated successfully, file '" + output + "'");
+    }
+
+    /**
+     * Write the binary descriptor unless the file already holds the same bytes.
+     */
+    private void writeBinaryDescriptor(BinaryDescriptorWriter binary, String binaryFileName) throws MojoExecutionException {
+        Path path = Paths.get(outputDirectory.getAbsolutePath(), binaryFileName);
+        try {
+            byte[] bytes = binary.toByteArray();
+            if (Files.isRegularFile(path) && Files.size(path) == bytes.length
+                    && Arrays.equals(bytes, Files.readAllBytes(path))) {
+                getLog().info("Binary service descriptor is up to date, file '" + path + "'.");
+                return;
             }
+            Files.write(path, bytes);
+            getLog().info(binary.getServiceCount() + " services written to binary descriptor '" + path + "', "
+                    + bytes.length + " byte.");
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to save file '" + path + "'", e);
+        }
+    }
+
+    private MessageDigest newDigest() throws MojoExecutionException {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new MojoExecutionException("Failed to compute digest of '" + outputFileName + "'", e);
+        }
+    }
+
+    private static String toHex(byte[] digest) {
+        StringBuilder buffer = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            buffer.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return buffer.toString();
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
         }
     }
 
-    private void appendUserDefindService(List<Map<String, String>> annotationList, Map spec, Map<String, Boolean> cachePorts) {
+    /**
+     * The file is up to date if it was generated from the same digest and not touched since.
+     */
+    private boolean isUpToDate(Path output, String digest, String outputFileName) {
+        Path digestFile = digestPath(outputFileName);
+        if (!Files.isRegularFile(output) || !Files.isRegularFile(digestFile)) {
+            return false;
+        }
+        try {
+            List<String> lines = Files.readAllLines(digestFile, StandardCharsets.UTF_8);
+            return lines.size() == 2
+                    && digest.equals(lines.get(0))
+                    && lines.get(1).equals(String.valueOf(Files.getLastModifiedTime(output).toMillis()));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void saveDigest(Path output, String digest, String outputFileName) {
+        Path digestFile = digestPath(outputFileName);
+        try {
+            String lastModified = String.valueOf(Files.getLastModifiedTime(output).toMillis());
+            Files.write(digestFile, Arrays.asList(digest, lastModified), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            getLog().warn("Failed to save digest file '" + digestFile + "', next build will regenerate '" + output + "'.", e);
+        }
+    }
+
+    private Path digestPath(String outputFileName) {
+        return Paths.get(outputDirectory.getAbsolutePath(), "." + outputFileName + ".sha1");
+    }
+
+    private void appendUserDefindService(ServiceDescriptorWriter writer, BinaryDescriptorWriter binary,
+                                         Map<String, String> ports, Environment target) throws IOException {
         Map<String, String> annotationMap = new LinkedHashMap<>();
 
         annotationMap.put("interfaceClass", "com.youzan.cloud.base.service.api.MessageService");
         annotationMap.put("extensionService", "true");
         annotationMap.put("protocol", "tether");
-        annotationList.add(annotationMap);
-
-        /** ports configuration*/
-        {
-            List ports = (List) spec.get("ports");
-
-            if (!cachePorts.containsKey("tether")) {
-                Map port = new LinkedHashMap();
-                port.put("protocol", "TCP");
-                port.put("port", detectPort("tether"));
-                ports.add(port);
-
-                cachePorts.put("tether", true);
-            }
+        writer.writeService(annotationMap);
+        if (binary != null) {
+            binary.addService(annotationMap);
         }
 
-        /**
-         * Compatible with scenes without service exported
-         */
-        if (!autoLoadblance && spec.get("clusterIP") == null) {
-            spec.put("clusterIP", "None");
+        /** ports configuration*/
+        if (!ports.containsKey("tether")) {
+            ports.put("tether", detectPort("tether", target));
         }
     }
 
-    private String detectPort(String name) {
+    private String detectPort(String name, Environment target) {
         String key = "application." + name + ".port";
         String port = null;
 
-        if ((port = getProperty(key)) != null) {
+        if ((port = target.getProperty(key)) != null) {
             return port;
         }
 
@@ -465,7 +901,10 @@ public class DubboServiceVisitor extends AbstractMojo {
             String attrKey = attribute.getKey();
             Object attrValue = attribute.getValue();
 
-            if (attrValue instanceof String) {
+            if (attrKey.equals("interfaceClass") && attrValue instanceof String) {
+                // class name read in bytecode only mode
+                return void.class.getName().equals(attrValue) || Void.class.getName().equals(attrValue);
+            } else if (attrValue instanceof String) {
                 String value = (String) attrValue;
                 String defValue = (String) defaults.get(attrKey);
 
@@ -477,19 +916,13 @@ public class DubboServiceVisitor extends AbstractMojo {
                     }
                 }
 
-            } else if (attrValue instanceof Boolean) {
-                boolean value = (boolean) attrValue;
-                boolean defValue = (boolean) defaults.get(attrKey);
-                return value == defValue;
-            } else if (attrValue instanceof Integer) {
-                int value = (int) attrValue;
-                int defValue = (int) defaults.get(attrKey);
-                return value == defValue;
+            } else if (attrValue instanceof Boolean || attrValue instanceof Integer) {
+                return attrValue.equals(defaults.get(attrKey));
             } else if (attrValue instanceof String[]) {
                 String[] values = (String[]) attrValue;
                 String[] defValues = (String[]) defaults.get(attrKey);
                 if (values == null || values.length == 0) return true;
-                if (values.length != defValues.length) return false;
+                if (defValues == null || values.length != defValues.length) return false;
                 boolean same = true;
                 for (int i = 0; i < values.length; i++) {
                     if (!defValues[i].equals(values[i])) {
@@ -499,7 +932,7 @@ public class DubboServiceVisitor extends AbstractMojo {
                 }
                 return same;
             } else {
-                if (attrKey.equals("interfaceClass")) {
+                if (attrKey.equals("interfaceClass") && attrValue instanceof Class) {
                     return void.class.isAssignableFrom((Class<?>) attrValue)
                             || Void.class.isAssignableFrom((Class<?>) attrValue);
                 }
@@ -520,8 +953,7 @@ public class DubboServiceVisitor extends AbstractMojo {
         return buffer.toString();
     }
 
-    private String serviceName(MetadataReader reader, Map<String, Object> attributes) {
-        String[] interfaceNames = reader.getClassMetadata().getInterfaceNames();
+    private String serviceName(String interfaceName, Map<String, Object> attributes) {
         StringBuilder buffer = new StringBuilder();
         String group = (String) attributes.get("group");
         if (group != null && group.length() > 0) {
@@ -531,8 +963,8 @@ public class DubboServiceVisitor extends AbstractMojo {
         if (group != null && group.length() > 0) {
             buffer.append(group).append("/");
         }
-        if (interfaceNames.length > 0) {
-            buffer.append(interfaceNames[0]);
+        if (interfaceName != null) {
+            buffer.append(interfaceName);
         }
         String version = (String) attributes.get("version");
         if (version != null && version.length() > 0) {
@@ -546,168 +978,463 @@ public class DubboServiceVisitor extends AbstractMojo {
     }
 
     private void removeIfNeed() throws MojoExecutionException {
-        Path path = Paths.get(outputDirectory.getAbsolutePath(), outputFileName);
-        if (Files.exists(path)) {
-            try {
-                Files.delete(path);
-            } catch (IOException e) {
-                throw new MojoExecutionException("Failed to delete file '" + path + "'", e);
-            }
+        for (String name : environmentNames()) {
+            removeIfNeed(environmentFileName(outputFileName, name), environmentFileName(binaryFileName, name));
         }
     }
 
-    private void createIfNeed() throws MojoExecutionException {
+    private void removeIfNeed(String outputFileName, String binaryFileName) throws MojoExecutionException {
         Path path = Paths.get(outputDirectory.getAbsolutePath(), outputFileName);
-        try {
-            Files.createFile(path);
-        } catch (IOException e) {
-            throw new MojoExecutionException("Failed to create new file '" + path + "'", e);
+        Path binary = StringUtils.hasText(binaryFileName) ? Paths.get(outputDirectory.getAbsolutePath(), binaryFileName) : null;
+        for (Path file : new Path[]{path, digestPath(outputFileName), binary}) {
+            if (file == null) {
+                continue;
+            }
+            if (Files.exists(file)) {
+                try {
+                    Files.delete(file);
+                } catch (IOException e) {
+                    throw new MojoExecutionException("Failed to delete file '" + file + "'", e);
+                }
+            }
         }
     }
 
+    private void closeResourceLoader() {
+        if (resourceLoader != null) {
+            try {
+                resourceLoader.close();
+            } catch (IOException ignored) {
+            }
+            resourceLoader = null;
+        }
+        if (classPathLoader != null) {
+            try {
+                classPathLoader.close();
+            } catch (IOException ignored) {
+            }
+            classPathLoader = null;
+        }
+    }
 
     private void findClassFiles(File search) throws MojoExecutionException {
+        ClassFileScanner scanner = new ClassFileScanner(scanThreads, packageToScans);
+        final ScanIndex previous = incremental ? previousIndex(search) : null;
+        final ScanIndex current = incremental ? new ScanIndex(indexKey()) : null;
+        long start = System.currentTimeMillis();
         try {
-            File[] files = search.listFiles();
-            for (File file : files) {
-                if (file.isDirectory()) {
-                    findClassFiles(file);
-                } else if (file.isFile()) {
-                    if (file.toPath().toString().endsWith(".class")) {
-                        SimpleMetadataReader reader = new SimpleMetadataReader(file, DubboServiceVisitor.class.getClassLoader());
-                        if (shouldInclude(reader)) {
-                            prepareAttributes(reader);
-                            foundAnnotation.add(reader);
+            List<ServiceDescriptor> entries = scanner.scan(search, new ClassFileHandler<ServiceDescriptor>() {
+                @Override
+                public ServiceDescriptor handle(File file, String className) throws IOException {
+                    metrics.increment(ScanMetrics.Counter.CLASSES_VISITED);
+                    if (current == null) {
+                        if (!preFilter) {
+                            return parseClass(file, null, 0);
                         }
+                        ClassFileBuffer buffer = readClassFile(file);
+                        return parseClass(file, buffer.array(), buffer.length());
                     }
+
+                    long size = file.length(), lastModified = file.lastModified();
+                    ScanIndex.Record record = previous.get(className);
+                    if (record != null && record.isUnmodified(size, lastModified)) {
+                        current.put(className, record);
+                        return record.getEntry();
+                    }
+
+                    ClassFileBuffer buffer = readClassFile(file);
+                    byte[] digest = ScanIndex.digest(buffer.array(), 0, buffer.length());
+                    ServiceDescriptor entry = (record != null && record.hasDigest(digest))
+                            ? record.getEntry() : parseClass(file, buffer.array(), buffer.length());
+                    current.put(className, new ScanIndex.Record(size, lastModified, digest, entry,
+                            AnnotationDescriptorFilter.isAnnotationType(buffer.array(), 0, buffer.length())));
+                    return entry;
                 }
-            }
+            });
+            foundAnnotation.addAll(entries);
         } catch (IOException e) {
             throw new MojoExecutionException("Failed to parsing annotation.", e);
         }
+        if (current != null) {
+            getLog().info("Incremental scan parsed " + metrics.get(ScanMetrics.Counter.CLASSES_PARSED) + " of "
+                    + metrics.get(ScanMetrics.Counter.CLASSES_VISITED) + " class files.");
+            sessionCache.putDirectoryIndex(indexFile, current);
+            try {
+                current.save(indexFile);
+            } catch (IOException e) {
+                getLog().warn("Failed to save scan index '" + indexFile + "', next build will rescan all classes.", e);
+            }
+        }
+        getLog().debug("Scanned '" + search + "' with " + scanner.getThreads() + " thread(s) in "
+                + (System.currentTimeMillis() - start) + " ms.");
     }
 
-    private boolean shouldInclude(SimpleMetadataReader reader) {
+    private ClassFileBuffer readClassFile(File file) throws IOException {
+        long start = metrics.begin();
+        ClassFileBuffer buffer = ClassFileBuffer.read(file);
+        metrics.end(ScanMetrics.Step.READ, start);
+        metrics.add(ScanMetrics.Counter.BYTES_READ, buffer.length());
+        return buffer;
+    }
 
-        boolean packageMatched = false, annotationMatched = false;
-        String className = reader.getClassMetadata().getClassName();
+    /**
+     * The index of an earlier execution in this build session, or the one stored by the previous build.
+     * An empty index if an annotation type declared in the scanned directory changed since.
+     */
+    private ScanIndex previousIndex(File search) {
+        ScanIndex index = sessionCache.getDirectoryIndex(indexFile, indexKey());
+        if (index == null) {
+            index = ScanIndex.load(indexFile, indexKey());
+        }
+        String annotationType = index.findModifiedAnnotationType(search);
+        if (annotationType != null) {
+            getLog().info("Annotation type '" + annotationType + "' changed, rescanning all classes.");
+            return new ScanIndex(indexKey());
+        }
+        return index;
+    }
 
-        for (String scanPackage : packageToScans) {
-            if (className.startsWith(scanPackage)) {
-                packageMatched = true;
-                break;
+    /**
+     * Scan the dependency jars selected by {@link #scanDependencies}, in groupId:artifactId order.
+     */
+    private void findDependencyClasses() throws MojoExecutionException {
+        List<Artifact> artifacts = selectDependencies();
+        if (artifacts.isEmpty()) {
+            return;
+        }
+        JarClassScanner scanner = new JarClassScanner(packageToScans);
+        JarEntryHandler<ServiceDescriptor> handler = new JarEntryHandler<ServiceDescriptor>() {
+            @Override
+            public ServiceDescriptor handle(File jar, String className, byte[] bytes) throws IOException {
+                metrics.increment(ScanMetrics.Counter.CLASSES_VISITED);
+                metrics.add(ScanMetrics.Counter.BYTES_READ, bytes.length);
+                return parseClass(jar, bytes, bytes.length);
+            }
+        };
+        for (Artifact artifact : artifacts) {
+            File jar = artifact.getFile();
+            try {
+                List<ServiceDescriptor> entries = incremental ? sessionCache.getJarEntries(jar, indexKey()) : null;
+                if (entries != null) {
+                    getLog().debug("Reusing services of dependency '" + artifact.getId() + "' found earlier in this build.");
+                } else {
+                    ScanIndex cached = null;
+                    File cacheFile = null;
+                    String key = null;
+                    if (incremental) {
+                        key = indexKey() + "|" + ScanIndex.digest(jar);
+                        cacheFile = new File(jarIndexDirectory, artifact.getGroupId() + "-" + artifact.getArtifactId() + ".idx");
+                        cached = ScanIndex.loadIfPresent(cacheFile, key);
+                    }
+                    if (cached != null) {
+                        entries = cached.getServiceEntries();
+                    } else {
+                        entries = scanner.scan(jar, handler);
+                        if (cacheFile != null) {
+                            ScanIndex index = new ScanIndex(key);
+                            for (ServiceDescriptor entry : entries) {
+                                index.put(entry.getClassName(), new ScanIndex.Record(0, 0, null, entry));
+                            }
+                            saveJarIndex(index, cacheFile);
+                        }
+                    }
+                }
+                if (incremental) {
+                    sessionCache.putJarEntries(jar, indexKey(), entries);
+                }
+                getLog().info("Found " + entries.size() + " service class(es) in dependency '" + artifact.getId() + "'.");
+                foundAnnotation.addAll(entries);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Failed to scan dependency '" + artifact.getId() + "'", e);
             }
         }
+    }
 
-        for (String annotation : annotationNames) {
-            if (reader.getAnnotationMetadata().isAnnotated(annotation)) {
-                annotationMatched = true;
-                break;
+    private List<Artifact> selectDependencies() {
+        List<Artifact> selected = new ArrayList<>();
+        if (!StringUtils.hasText(scanDependencies) || project.getArtifacts() == null) {
+            return selected;
+        }
+        List<Pattern> patterns = new ArrayList<>();
+        for (String pattern : StringUtils.tokenizeToStringArray(scanDependencies, ",")) {
+            patterns.add(toPattern(pattern.indexOf(':') >= 0 ? pattern : "*:" + pattern));
+        }
+        for (Artifact artifact : project.getArtifacts()) {
+            File file = artifact.getFile();
+            if (file == null || !file.isFile() || !file.getName().endsWith(".jar")) {
+                continue;
+            }
+            String coordinates = artifact.getGroupId() + ":" + artifact.getArtifactId();
+            for (Pattern pattern : patterns) {
+                if (pattern.matcher(coordinates).matches()) {
+                    selected.add(artifact);
+                    break;
+                }
             }
         }
+        Collections.sort(selected, new Comparator<Artifact>() {
+            @Override
+            public int compare(Artifact a, Artifact b) {
+                return (a.getGroupId() + ":" + a.getArtifactId()).compareTo(b.getGroupId() + ":" + b.getArtifactId());
+            }
+        });
+        return selected;
+    }
 
-        return (packageMatched && annotationMatched);
+    private static Pattern toPattern(String glob) {
+        StringBuilder regex = new StringBuilder();
+        String[] parts = glob.trim().split("\\*", -1);
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                regex.append(".*");
+            }
+            regex.append(Pattern.quote(parts[i]));
+        }
+        return Pattern.compile(regex.toString());
     }
 
-    private void prepareAttributes(SimpleMetadataReader reader) {
-        for (String annotation : annotationNames) {
-            if (reader.getAnnotationMetadata().isAnnotated(annotation)) {
-                Map<String, Object> attributes = reader.getAnnotationMetadata().getAnnotationAttributes(annotation);
-                Iterator<Map.Entry<String, Object>> attribute = attributes.entrySet().iterator();
-                while (attribute.hasNext()) {
-                    Map.Entry<String, Object> attr = attribute.next();
-                    if (attr.getValue() != null) {
-                        Object value = attr.getValue();
-                        if (value instanceof String) {
-                            String unsolved = (String) value;
-                            if (unsolved == null || unsolved.length() == 0) continue;
-                            if (!unsolved.startsWith("${")) continue;
-                            if (unsolved.startsWith("${") && unsolved.endsWith("}")) {
-                                attr.setValue(getProperty(unsolved.substring(2, unsolved.length() - 1)));
-                            }
-                        } else if (value instanceof String[]) {
-                            String[] unsolvedValus = (String[]) value;
-                            if (unsolvedValus == null || unsolvedValus.length == 0) continue;
-                            for (int i = 0; i < unsolvedValus.length; i++) {
-                                if (!unsolvedValus[i].startsWith("${")) continue;
-                                if (unsolvedValus[i].startsWith("${") && unsolvedValus[i].endsWith("}")) {
-                                    unsolvedValus[i] = getProperty(unsolvedValus[i].substring(2, unsolvedValus[i].length() - 1));
-                                }
-                            }
-                        }
-                    }
+    private void saveJarIndex(ScanIndex index, File cacheFile) {
+        try {
+            index.save(cacheFile);
+        } catch (IOException e) {
+            getLog().warn("Failed to save dependency index '" + cacheFile + "'.", e);
+        }
+    }
+
+    /**
+     * Parse a class and extract its services, the resource is the class file or the jar containing it.
+     *
+     * @param bytes  the class content, or {@code null} to read the class file
+     * @param length the length of the content, the array may be larger
+     */
+    private ServiceDescriptor parseClass(File resource, byte[] bytes, int length) throws IOException {
+        long start = metrics.begin();
+        if (bytes != null && classFilter != null) {
+            boolean matches = classFilter.matches(bytes, 0, length);
+            metrics.end(ScanMetrics.Step.FILTER, start);
+            if (!matches) {
+                metrics.increment(ScanMetrics.Counter.CLASSES_SKIPPED);
+                return null;
+            }
+            start = metrics.begin();
+        }
+
+        metrics.increment(ScanMetrics.Counter.CLASSES_PARSED);
+        MetadataReader reader;
+        if (bytes == null) {
+            metrics.add(ScanMetrics.Counter.BYTES_READ, resource.length());
+            reader = metadataReaderFactory.getMetadataReader(resource);
+        } else {
+            reader = metadataReaderFactory.getMetadataReader(resource, bytes, length);
+        }
+        classHierarchy.register(reader.getClassMetadata());
+        metrics.end(ScanMetrics.Step.PARSE, start);
+
+        start = metrics.begin();
+        try {
+            String[] matched = serviceMatcher.match(reader.getAnnotationMetadata());
+            return matched != null ? toServiceDescriptor(reader, matched) : null;
+        } finally {
+            metrics.end(ScanMetrics.Step.INTROSPECT, start);
+        }
+    }
+
+    /**
+     * Identifies the scan settings and the class path a stored index was built with,
+     * a dependency may declare the composed annotations of the scanned classes.
+     */
+    private String indexKey() {
+        return "v3|" + StringUtils.arrayToCommaDelimitedString(annotationNames) + "|" + packageToScan + "|" + preFilter
+                + "|" + bytecodeOnly + "|" + classPathFingerprint;
+    }
+
+    /**
+     * Reduce a matching class to its service descriptor right away, dropping attributes
+     * left at their defaults, so the reader and its visitor graph can be collected.
+     *
+     * @param matched the service annotation types of the class, see {@link ServiceAnnotationMatcher}
+     */
+    private ServiceDescriptor toServiceDescriptor(MetadataReader reader, String[] matched) {
+        Map<String, Map<String, Object>> annotations = new LinkedHashMap<>();
+        for (String annotation : matched) {
+            // class values can only be exposed as names without a class loader
+            Map<String, Object> attributes = new LinkedHashMap<>();
+            for (Map.Entry<String, Object> attribute
+                    : reader.getAnnotationMetadata().getAnnotationAttributes(annotation, bytecodeOnly).entrySet()) {
+                if (!shouldIgnore(attribute)) {
+                    attributes.put(attribute.getKey(), attribute.getValue());
+                }
+            }
+            annotations.put(annotation, attributes);
+        }
+        String className = reader.getClassMetadata().getClassName();
+        return new ServiceDescriptor(className, annotations);
+    }
+
+    /**
+     * Resolve the placeholders of string and string array attributes, a value
+     * that cannot be resolved is kept as written.
+     */
+    private Map<String, Object> resolveAttributes(Map<String, Object> attributes, PlaceholderResolver resolver) {
+        if (attributes == null) {
+            return null;
+        }
+        Map<String, Object> resolved = new LinkedHashMap<>(attributes);
+        for (Map.Entry<String, Object> attr : resolved.entrySet()) {
+            Object value = attr.getValue();
+            if (value instanceof String) {
+                attr.setValue(resolvePlaceholders((String) value, resolver));
+            } else if (value instanceof String[] && ((String[]) value).length > 0) {
+                String[] values = ((String[]) value).clone();
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = resolvePlaceholders(values[i], resolver);
                 }
+                attr.setValue(values);
             }
         }
+        return resolved;
     }
 
-    <T> T getProperty(String key) {
-        Object value = System.getProperty(key);
-        if (value != null) return (T) value;
+    private String resolvePlaceholders(String value, PlaceholderResolver resolver) {
+        String solved = resolver.resolve(value);
+        return (solved != null ? solved : value);
+    }
+
+    /**
+     * Load the property sources of an environment once, highest precedence first: system
+     * properties, the profile of the environment, the application configuration and
+     * the Maven project properties. Each configuration file may be a
+     * {@code .properties}, {@code .yml} or {@code .yaml} file.
+     */
+    private PropertySources loadPropertySources(String environment) throws MojoExecutionException {
+        List<PropertySource> sources = new ArrayList<>(5);
+        sources.add(PropertySource.of("system properties", System.getProperties()));
+        if (session != null) {
+            sources.add(PropertySource.of("user properties", session.getUserProperties()));
+        }
+
+        if (usePropertyFile || StringUtils.hasText(environments)) {
+            File profile = findConfiguration(prefixOfConfiguation + environment);
+            if (profile == null) {
+                throw new MojoExecutionException("Unable to find configuration  file '"
+                        + Paths.get(searchDirectory.getAbsolutePath(), prefixOfConfiguation + environment + ".properties") + "'");
+            }
+            try {
+                sources.add(sessionCache.getPropertySource(profile));
+            } catch (IOException e) {
+                throw new MojoExecutionException("Failed to load configuration  file '" + profile + "'", e);
+            }
 
-        value = properties.get(key);
-        if (value != null) {
-            return (T) value;
+            File application = findConfiguration("application");
+            try {
+                if (application != null) {
+                    sources.add(sessionCache.getPropertySource(application));
+                }
+            } catch (IOException ignored) {
+            }
         }
-        value = globalProperties.getProperty(key);
-        if (value != null) {
-            return (T) value;
+
+        if (project != null) {
+            sources.add(PropertySource.of("project properties", project.getProperties()));
         }
 
+        PropertySources propertySources = new PropertySources(sources);
+        getLog().debug(propertySources.size() + " properties loaded from " + propertySources);
+        return propertySources;
+    }
+
+    private File findConfiguration(String baseName) {
+        for (String extension : CONFIGURATION_EXTENSIONS) {
+            File file = new File(searchDirectory, baseName + extension);
+            if (file.isFile()) {
+                return file;
+            }
+        }
         return null;
     }
 
-    private void prepareAnnotationValues() {
-        annotationDefaultValues.put("interfaceClass", void.class);
-        annotationDefaultValues.put("interfaceName", "");
-        annotationDefaultValues.put("version", "");
-        annotationDefaultValues.put("tag", "");
-        annotationDefaultValues.put("group", "");
-        annotationDefaultValues.put("value", "");
-        annotationDefaultValues.put("path", "");
-        annotationDefaultValues.put("export", false);
-        annotationDefaultValues.put("token", "");
-        annotationDefaultValues.put("deprecated", false);
-        annotationDefaultValues.put("dynamic", false);
-        annotationDefaultValues.put("accesslog", "");
-        annotationDefaultValues.put("executes", 0);
-        annotationDefaultValues.put("register", false);
-        annotationDefaultValues.put("weight", 0);
-        annotationDefaultValues.put("document", "");
-        annotationDefaultValues.put("delay", 0);
-        annotationDefaultValues.put("local", "");
-        annotationDefaultValues.put("stub", "");
-        annotationDefaultValues.put("cluster", "");
-        annotationDefaultValues.put("proxy", "");
-        annotationDefaultValues.put("connections", 0);
-        annotationDefaultValues.put("callbacks", 0);
-        annotationDefaultValues.put("onconnect", "");
-        annotationDefaultValues.put("ondisconnect", "");
-        annotationDefaultValues.put("owner", "");
-        annotationDefaultValues.put("layer", "");
-        annotationDefaultValues.put("retries", 0);
-        annotationDefaultValues.put("loadbalance", "");
-        annotationDefaultValues.put("async", false);
-        annotationDefaultValues.put("actives", 0);
-        annotationDefaultValues.put("sent", false);
-        annotationDefaultValues.put("mock", "");
-        annotationDefaultValues.put("validation", "");
-        annotationDefaultValues.put("timeout", 0);
-        annotationDefaultValues.put("cache", "");
-        annotationDefaultValues.put("filter", new String[0]);
-        annotationDefaultValues.put("listener", new String[0]);
-        annotationDefaultValues.put("parameters", new String[0]);
-        annotationDefaultValues.put("application", "");
-        annotationDefaultValues.put("module", "");
-        annotationDefaultValues.put("provider", "");
-        annotationDefaultValues.put("protocol", new String[0]);
-        annotationDefaultValues.put("monitor", "");
-        annotationDefaultValues.put("registry", new String[0]);
+    /**
+     * Report the placeholders that could be resolved neither from a property nor from
+     * a default, they are kept as written in the generated descriptor.
+     */
+    private void reportUnresolvedPlaceholders(Environment target) {
+        Set<String> unresolved = new TreeSet<>(target.placeholderResolver.getUnresolvedKeys());
+        if (!unresolved.isEmpty()) {
+            getLog().warn(unresolved.size() + (unresolved.size() > 1 ? " placeholders" : " placeholder")
+                    + " not resolved from " + target.propertySources + ": " + StringUtils.collectionToDelimitedString(unresolved, ", "));
+        }
     }
 
+    /**
+     * The environments to generate descriptors for, the single configured environment
+     * unless several are listed.
+     */
+    private List<String> environmentNames() {
+        if (!StringUtils.hasText(environments)) {
+            return Collections.singletonList(environment);
+        }
+        return new ArrayList<>(new LinkedHashSet<>(Arrays.asList(StringUtils.tokenizeToStringArray(environments, ","))));
+    }
+
+    /**
+     * Append the environment to a file name when several environments are generated,
+     * eg: dubbo-service-prod.yaml for dubbo-service.yaml.
+     */
+    private String environmentFileName(String fileName, String environment) {
+        if (!StringUtils.hasText(environments) || !StringUtils.hasText(fileName)) {
+            return fileName;
+        }
+        int extension = fileName.lastIndexOf('.');
+        return extension > 0
+                ? fileName.substring(0, extension) + "-" + environment + fileName.substring(extension)
+                : fileName + "-" + environment;
+    }
+
+    private static final String DIGEST_VERSION = "2";
+
+    private static final String[] CONFIGURATION_EXTENSIONS = {".properties", ".yml", ".yaml"};
+
+    /**
+     * k8s limits the total size of the annotations to 256 KB, leave room for the others.
+     */
+    private static final int MAX_CONTENT_SIZE = 255 * 1024;
+
     public static final String TAG_KEY = "tag";
 
     public static final String VALUE_KEY = "value";
 
     public static final String APP = "app";
+
+
+    /**
+     * The properties and output files of one environment a descriptor is generated for.
+     */
+    private static final class Environment {
+
+        private final String name;
+
+        private final String outputFileName;
+
+        private final String binaryFileName;
+
+        private final PropertySources propertySources;
+
+        private final PlaceholderResolver placeholderResolver;
+
+        private String applicationName;
+
+        private Environment(String name, String outputFileName, String binaryFileName,
+                            PropertySources propertySources, PlaceholderResolver placeholderResolver) {
+            this.name = name;
+            this.outputFileName = outputFileName;
+            this.binaryFileName = binaryFileName;
+            this.propertySources = propertySources;
+            this.placeholderResolver = placeholderResolver;
+        }
+
+        private String getProperty(String key) {
+            return this.placeholderResolver.getProperty(key);
+        }
+    }
+
 }
@@ -29,6 +29,15 @@ public interface AnnotationMetadata extends ClassMetadata, AnnotationTypeMetadat
      */
     Set<String> getMetaAnnotationTypes(String annotationName);
 
+    /**
+     * Get the fully qualified class names of all annotation types that are
+     * <em>present</em> or <em>meta-present</em> on the underlying class, i.e. the
+     * types {@link #isAnnotated} returns {@code true} for, in a single set.
+     *
+     * @return the annotation type names, never {@code null}
+     */
+    Set<String> getAnnotatedTypes();
+
     /**
      * Determine whether an annotation of the given type is <em>present</em> on
      * the underlying class.
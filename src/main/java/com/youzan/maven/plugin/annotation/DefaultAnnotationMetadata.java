@@ -60,6 +60,20 @@ public class DefaultAnnotationMetadata extends DefaultClassMetadata implements A
                 AnnotatedElementUtils.getMetaAnnotationTypes(getIntrospectedClass(), annotationName) : null);
     }
 
+    @Override
+    public Set<String> getAnnotatedTypes() {
+        Set<String> types = new LinkedHashSet<String>();
+        for (Annotation ann : this.annotations) {
+            String type = ann.annotationType().getName();
+            types.add(type);
+            Set<String> metaTypes = getMetaAnnotationTypes(type);
+            if (metaTypes != null) {
+                types.addAll(metaTypes);
+            }
+        }
+        return types;
+    }
+
     @Override
     public boolean hasAnnotation(String annotationName) {
         for (Annotation ann : this.annotations) {
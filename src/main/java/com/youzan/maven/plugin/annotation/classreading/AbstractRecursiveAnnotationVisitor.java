@@ -55,6 +55,10 @@ public class AbstractRecursiveAnnotationVisitor extends AnnotationVisitor {
 
     protected Object getEnumValue(String asmTypeDescriptor, String attributeValue) {
         Object valueToUse = attributeValue;
+        if (this.classLoader == null) {
+            // pure bytecode metadata, keep the constant name
+            return valueToUse;
+        }
         try {
             Class<?> enumType = this.classLoader.loadClass(Type.getType(asmTypeDescriptor).getClassName());
             Field enumConstant = ReflectionUtils.findField(enumType, attributeValue);
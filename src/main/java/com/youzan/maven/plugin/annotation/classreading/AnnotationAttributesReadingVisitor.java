@@ -1,13 +1,9 @@
 package com.youzan.maven.plugin.annotation.classreading;
 
 import org.springframework.core.annotation.AnnotationAttributes;
-import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.util.MultiValueMap;
-import org.springframework.util.ObjectUtils;
 
 import java.lang.annotation.Annotation;
-import java.lang.reflect.Modifier;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -21,14 +17,28 @@ public class AnnotationAttributesReadingVisitor extends RecursiveAnnotationAttri
 
     private final Map<String, Set<String>> metaAnnotationMap;
 
+    private final MetaAnnotationCache metaAnnotationCache;
+
 
     public AnnotationAttributesReadingVisitor(String annotationType,
                                               MultiValueMap<String, AnnotationAttributes> attributesMap, Map<String, Set<String>> metaAnnotationMap,
                                               ClassLoader classLoader) {
 
+        this(annotationType, attributesMap, metaAnnotationMap, classLoader, null);
+    }
+
+    /**
+     * @param metaAnnotationCache the cache to look up meta-annotations in, or {@code null}
+     *                            to introspect the annotation type on every visit
+     */
+    public AnnotationAttributesReadingVisitor(String annotationType,
+                                              MultiValueMap<String, AnnotationAttributes> attributesMap, Map<String, Set<String>> metaAnnotationMap,
+                                              ClassLoader classLoader, MetaAnnotationCache metaAnnotationCache) {
+
         super(annotationType, new AnnotationAttributes(annotationType, classLoader), classLoader);
         this.attributesMap = attributesMap;
         this.metaAnnotationMap = metaAnnotationMap;
+        this.metaAnnotationCache = metaAnnotationCache;
     }
 
 
@@ -36,8 +46,21 @@ public class AnnotationAttributesReadingVisitor extends RecursiveAnnotationAttri
     public void visitEnd() {
         super.visitEnd();
 
-        Class<?> annotationClass = this.attributes.annotationType();
+        MetaAnnotationCache.MetaAnnotations metaAnnotations = null;
+        Class<? extends Annotation> annotationClass = this.attributes.annotationType();
         if (annotationClass != null) {
+            metaAnnotations = (this.metaAnnotationCache != null
+                    ? this.metaAnnotationCache.getMetaAnnotations(annotationClass)
+                    : MetaAnnotationCache.introspect(annotationClass));
+        }
+        else if (this.metaAnnotationCache != null && this.metaAnnotationCache.isBytecodeOnly()) {
+            metaAnnotations = this.metaAnnotationCache.getMetaAnnotations(this.annotationType);
+            if (metaAnnotations != null) {
+                metaAnnotations.applyDefaultsTo(this.attributes);
+            }
+        }
+
+        if (metaAnnotations != null) {
             List<AnnotationAttributes> attributeList = this.attributesMap.get(this.annotationType);
             if (attributeList == null) {
                 this.attributesMap.add(this.annotationType, this.attributes);
@@ -45,45 +68,9 @@ public class AnnotationAttributesReadingVisitor extends RecursiveAnnotationAttri
             else {
                 attributeList.add(0, this.attributes);
             }
-            Set<Annotation> visited = new LinkedHashSet<Annotation>();
-            Annotation[] metaAnnotations = AnnotationUtils.getAnnotations(annotationClass);
-            if (!ObjectUtils.isEmpty(metaAnnotations)) {
-                for (Annotation metaAnnotation : metaAnnotations) {
-                    if (!AnnotationUtils.isInJavaLangAnnotationPackage(metaAnnotation)) {
-                        recursivelyCollectMetaAnnotations(visited, metaAnnotation);
-                    }
-                }
-            }
+            metaAnnotations.addAttributesTo(this.attributesMap);
             if (this.metaAnnotationMap != null) {
-                Set<String> metaAnnotationTypeNames = new LinkedHashSet<String>(visited.size());
-                for (Annotation ann : visited) {
-                    metaAnnotationTypeNames.add(ann.annotationType().getName());
-                }
-                this.metaAnnotationMap.put(annotationClass.getName(), metaAnnotationTypeNames);
-            }
-        }
-    }
-
-    private void recursivelyCollectMetaAnnotations(Set<Annotation> visited, Annotation annotation) {
-        Class<? extends Annotation> annotationType = annotation.annotationType();
-        String annotationName = annotationType.getName();
-        if (!AnnotationUtils.isInJavaLangAnnotationPackage(annotationName) && visited.add(annotation)) {
-            try {
-                // Only do attribute scanning for public annotations; we'd run into
-                // IllegalAccessExceptions otherwise, and we don't want to mess with
-                // accessibility in a SecurityManager environment.
-                if (Modifier.isPublic(annotationType.getModifiers())) {
-                    this.attributesMap.add(annotationName,
-                            AnnotationUtils.getAnnotationAttributes(annotation, false, true));
-                }
-                for (Annotation metaMetaAnnotation : annotationType.getAnnotations()) {
-                    recursivelyCollectMetaAnnotations(visited, metaMetaAnnotation);
-                }
-            }
-            catch (Throwable ex) {
-                if (logger.isDebugEnabled()) {
-                    logger.debug("Failed to introspect meta-annotations on [" + annotation + "]: " + ex);
-                }
+                this.metaAnnotationMap.put(this.annotationType, metaAnnotations.getTypeNames());
             }
         }
     }
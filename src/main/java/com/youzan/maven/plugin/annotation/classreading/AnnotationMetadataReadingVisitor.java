@@ -4,6 +4,7 @@ package com.youzan.maven.plugin.annotation.classreading;
 import com.youzan.maven.plugin.annotation.AnnotationMetadata;
 
 import org.springframework.asm.AnnotationVisitor;
+import org.springframework.asm.FieldVisitor;
 import org.springframework.asm.MethodVisitor;
 import org.springframework.asm.Opcodes;
 import org.springframework.asm.Type;
@@ -15,6 +16,7 @@ import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -42,14 +44,57 @@ public class AnnotationMetadataReadingVisitor extends ClassMetadataReadingVisito
 
     protected final Set<MethodMetadata> methodMetadataSet = new LinkedHashSet<MethodMetadata>(4);
 
+    protected final boolean readMethodMetadata;
+
+    protected final MetaAnnotationCache metaAnnotationCache;
+
 
     public AnnotationMetadataReadingVisitor(ClassLoader classLoader) {
+        this(classLoader, true);
+    }
+
+    /**
+     * @param readMethodMetadata whether to build {@link MethodMetadata} for the visited methods,
+     *                           if {@code false} methods and fields are not visited at all
+     */
+    public AnnotationMetadataReadingVisitor(ClassLoader classLoader, boolean readMethodMetadata) {
+        this(classLoader, readMethodMetadata, null);
+    }
+
+    /**
+     * @param metaAnnotationCache the cache shared by all readers of a scan, or {@code null}
+     *                            to introspect meta-annotations for every class
+     */
+    public AnnotationMetadataReadingVisitor(ClassLoader classLoader, boolean readMethodMetadata,
+                                            MetaAnnotationCache metaAnnotationCache) {
+        this(classLoader, readMethodMetadata, metaAnnotationCache, null);
+    }
+
+    /**
+     * @param classNames the class names shared by all readers of a scan, or {@code null}
+     */
+    public AnnotationMetadataReadingVisitor(ClassLoader classLoader, boolean readMethodMetadata,
+                                            MetaAnnotationCache metaAnnotationCache, ClassNameTable classNames) {
+        super(classNames);
         this.classLoader = classLoader;
+        this.readMethodMetadata = readMethodMetadata;
+        this.metaAnnotationCache = metaAnnotationCache;
     }
 
 
+    @Override
+    public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+        if (!this.readMethodMetadata) {
+            return null;
+        }
+        return super.visitField(access, name, desc, signature, value);
+    }
+
     @Override
     public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+        if (!this.readMethodMetadata) {
+            return null;
+        }
         // Skip bridge methods - we're only interested in original annotation-defining user methods.
         // On JDK 8, we'd otherwise run into double detection of the same annotated method...
         if ((access & Opcodes.ACC_BRIDGE) != 0) {
@@ -61,10 +106,11 @@ public class AnnotationMetadataReadingVisitor extends ClassMetadataReadingVisito
 
     @Override
     public AnnotationVisitor visitAnnotation(final String desc, boolean visible) {
-        String className = Type.getType(desc).getClassName();
+        String className = (this.classNames != null ? this.classNames.descriptorToClassName(desc)
+                : Type.getType(desc).getClassName());
         this.annotationSet.add(className);
         return new AnnotationAttributesReadingVisitor(
-                className, this.attributesMap, this.metaAnnotationMap, this.classLoader);
+                className, this.attributesMap, this.metaAnnotationMap, this.classLoader, this.metaAnnotationCache);
     }
 
 
@@ -78,6 +124,11 @@ public class AnnotationMetadataReadingVisitor extends ClassMetadataReadingVisito
         return this.metaAnnotationMap.get(annotationName);
     }
 
+    @Override
+    public Set<String> getAnnotatedTypes() {
+        return Collections.unmodifiableSet(this.attributesMap.keySet());
+    }
+
     @Override
     public boolean hasAnnotation(String annotationName) {
         return this.annotationSet.contains(annotationName);
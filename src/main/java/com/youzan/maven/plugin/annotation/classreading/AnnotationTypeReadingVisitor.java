@@ -0,0 +1,160 @@
+package com.youzan.maven.plugin.annotation.classreading;
+
+import org.springframework.asm.AnnotationVisitor;
+import org.springframework.asm.ClassVisitor;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.SpringAsmInfo;
+import org.springframework.asm.Type;
+import org.springframework.core.annotation.AnnotationAttributes;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.util.LinkedMultiValueMap;
+
+/**
+ * ASM class visitor reading the declaration of an annotation type from its class file:
+ * the default values of its attributes and the runtime-visible annotations declared
+ * on it, without loading the annotation type.
+ * <p>Enum values are kept as constant names and class values as ASM {@link Type}s.
+ *
+ * @author yiji@apache.org
+ */
+class AnnotationTypeReadingVisitor extends ClassVisitor {
+
+    private boolean isPublic;
+
+    private final AnnotationAttributes defaults = new AnnotationAttributes();
+
+    private final LinkedMultiValueMap<String, AnnotationAttributes> annotations =
+            new LinkedMultiValueMap<String, AnnotationAttributes>(4);
+
+
+    public AnnotationTypeReadingVisitor() {
+        super(SpringAsmInfo.ASM_VERSION);
+    }
+
+
+    @Override
+    public void visit(int version, int access, String name, String signature, String supername, String[] interfaces) {
+        this.isPublic = ((access & Opcodes.ACC_PUBLIC) != 0);
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+        // only runtime retention is visible to reflection
+        if (!visible) {
+            return null;
+        }
+        String annotationType = Type.getType(desc).getClassName();
+        if (AnnotationUtils.isInJavaLangAnnotationPackage(annotationType)) {
+            return null;
+        }
+        AnnotationAttributes attributes = new AnnotationAttributes(annotationType, null);
+        this.annotations.add(annotationType, attributes);
+        return new RecursiveAnnotationAttributesVisitor(annotationType, attributes, null);
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, final String name, final String desc, String signature, String[] exceptions) {
+        return new MethodVisitor(SpringAsmInfo.ASM_VERSION) {
+            @Override
+            public AnnotationVisitor visitAnnotationDefault() {
+                return new DefaultValueVisitor(name, Type.getReturnType(desc), defaults);
+            }
+        };
+    }
+
+
+    public boolean isPublic() {
+        return this.isPublic;
+    }
+
+    /**
+     * Return the default attribute values, keyed by attribute name.
+     */
+    public AnnotationAttributes getDefaults() {
+        return this.defaults;
+    }
+
+    /**
+     * Return the attributes of the runtime-visible annotations declared on the annotation type.
+     */
+    public LinkedMultiValueMap<String, AnnotationAttributes> getAnnotations() {
+        return this.annotations;
+    }
+
+
+    /**
+     * Reads the value of an {@code AnnotationDefault} attribute, which ASM reports
+     * without an attribute name, into the attribute of the declaring method.
+     */
+    private static class DefaultValueVisitor extends AbstractRecursiveAnnotationVisitor {
+
+        private final String attributeName;
+
+        private final Type attributeType;
+
+        public DefaultValueVisitor(String attributeName, Type attributeType, AnnotationAttributes attributes) {
+            super(null, attributes);
+            this.attributeName = attributeName;
+            this.attributeType = attributeType;
+        }
+
+        @Override
+        public void visit(String attributeName, Object attributeValue) {
+            super.visit(this.attributeName, attributeValue);
+        }
+
+        @Override
+        public void visitEnum(String attributeName, String asmTypeDescriptor, String attributeValue) {
+            super.visitEnum(this.attributeName, asmTypeDescriptor, attributeValue);
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String attributeName, String asmTypeDescriptor) {
+            return super.visitAnnotation(this.attributeName, asmTypeDescriptor);
+        }
+
+        @Override
+        public AnnotationVisitor visitArray(String attributeName) {
+            return new RecursiveAnnotationArrayVisitor(this.attributeName, this.attributes, null) {
+                @Override
+                public void visitEnd() {
+                    super.visitEnd();
+                    if (!this.attributes.containsKey(DefaultValueVisitor.this.attributeName)) {
+                        // empty arrays do not report any element
+                        this.attributes.put(DefaultValueVisitor.this.attributeName,
+                                emptyArray(DefaultValueVisitor.this.attributeType.getElementType()));
+                    }
+                }
+            };
+        }
+
+        private static Object emptyArray(Type elementType) {
+            switch (elementType.getSort()) {
+                case Type.BOOLEAN:
+                    return new boolean[0];
+                case Type.CHAR:
+                    return new char[0];
+                case Type.BYTE:
+                    return new byte[0];
+                case Type.SHORT:
+                    return new short[0];
+                case Type.INT:
+                    return new int[0];
+                case Type.FLOAT:
+                    return new float[0];
+                case Type.LONG:
+                    return new long[0];
+                case Type.DOUBLE:
+                    return new double[0];
+                default:
+                    if ("java.lang.Class".equals(elementType.getClassName())) {
+                        return new Type[0];
+                    }
+                    // strings, and enums which are read as their constant names
+                    return new String[0];
+            }
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.youzan.maven.plugin.annotation.classreading;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The content of a class file, read into a buffer reused by the calling thread.
+ * <p>The file size is taken from the channel and the content is read straight into
+ * the buffer, without the intermediate copies of a buffered stream, and ASM reads
+ * the buffer in place. A scan thread thus reads all its class files into the same
+ * array, grown to the largest file seen; files larger than {@link #MAX_POOLED_CAPACITY}
+ * are read into an array of their own that is not kept.
+ * <p>The content is only valid until the next {@link #read} on the same thread and
+ * must neither be retained nor handed to another thread.
+ *
+ * @author yiji@apache.org
+ */
+public final class ClassFileBuffer {
+
+    static final int INITIAL_CAPACITY = 16 * 1024;
+
+    static final int MAX_POOLED_CAPACITY = 1024 * 1024;
+
+    private static final ThreadLocal<ClassFileBuffer> BUFFERS = new ThreadLocal<ClassFileBuffer>();
+
+    private byte[] bytes;
+
+    private int length;
+
+
+    private ClassFileBuffer(int capacity) {
+        this.bytes = new byte[capacity];
+    }
+
+
+    /**
+     * Read the given class file.
+     *
+     * @return the buffer holding the content, valid until the next read on this thread
+     */
+    public static ClassFileBuffer read(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size >= MAX_POOLED_CAPACITY) {
+                if (size >= Integer.MAX_VALUE) {
+                    throw new IOException("Class file too large: " + file);
+                }
+                return new ClassFileBuffer((int) size + 1).readFully(channel);
+            }
+            ClassFileBuffer buffer = BUFFERS.get();
+            if (buffer == null) {
+                buffer = new ClassFileBuffer(Math.max(INITIAL_CAPACITY, (int) size + 1));
+                BUFFERS.set(buffer);
+            } else {
+                buffer.length = 0;
+                buffer.ensureCapacity((int) size + 1);
+            }
+            return buffer.readFully(channel);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Release the buffer of the calling thread, e.g. at the end of a build on a thread
+     * that outlives the plugin.
+     */
+    public static void release() {
+        BUFFERS.remove();
+    }
+
+
+    /**
+     * Return the backing array, the content starts at index 0.
+     */
+    public byte[] array() {
+        return this.bytes;
+    }
+
+    /**
+     * Return the length of the content.
+     */
+    public int length() {
+        return this.length;
+    }
+
+    /**
+     * Return a copy of the content that may be retained.
+     */
+    public byte[] toByteArray() {
+        byte[] copy = new byte[this.length];
+        System.arraycopy(this.bytes, 0, copy, 0, this.length);
+        return copy;
+    }
+
+    /**
+     * Read until the end of the channel; the buffer is one byte larger than the
+     * expected size so the end is detected without growing it.
+     */
+    private ClassFileBuffer readFully(FileChannel channel) throws IOException {
+        this.length = 0;
+        while (true) {
+            if (this.length == this.bytes.length) {
+                ensureCapacity(this.length + 1);
+            }
+            int read = channel.read(ByteBuffer.wrap(this.bytes, this.length, this.bytes.length - this.length));
+            if (read < 0) {
+                return this;
+            }
+            this.length += read;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (this.bytes.length < capacity) {
+            byte[] bytes = new byte[Math.max(capacity, this.bytes.length * 2)];
+            System.arraycopy(this.bytes, 0, bytes, 0, this.length);
+            this.bytes = bytes;
+        }
+    }
+
+}
@@ -1,5 +1,7 @@
 package com.youzan.maven.plugin.annotation.classreading;
 
+import com.youzan.maven.plugin.annotation.ClassMetadata;
+
 import org.springframework.asm.AnnotationVisitor;
 import org.springframework.asm.Attribute;
 import org.springframework.asm.ClassVisitor;
@@ -7,7 +9,6 @@ import org.springframework.asm.FieldVisitor;
 import org.springframework.asm.MethodVisitor;
 import org.springframework.asm.Opcodes;
 import org.springframework.asm.SpringAsmInfo;
-import org.springframework.core.type.ClassMetadata;
 import org.springframework.util.ClassUtils;
 import org.springframework.util.StringUtils;
 
@@ -39,38 +40,49 @@ class ClassMetadataReadingVisitor extends ClassVisitor implements ClassMetadata
 
     private Set<String> memberClassNames = new LinkedHashSet<String>(4);
 
+    protected final ClassNameTable classNames;
+
 
     public ClassMetadataReadingVisitor() {
+        this(null);
+    }
+
+    /**
+     * @param classNames the class names shared by all readers of a scan, or {@code null}
+     *                   to convert every name on its own
+     */
+    public ClassMetadataReadingVisitor(ClassNameTable classNames) {
         super(SpringAsmInfo.ASM_VERSION);
+        this.classNames = classNames;
     }
 
 
     @Override
     public void visit(int version, int access, String name, String signature, String supername, String[] interfaces) {
-        this.className = ClassUtils.convertResourcePathToClassName(name);
+        this.className = toClassName(name);
         this.isInterface = ((access & Opcodes.ACC_INTERFACE) != 0);
         this.isAnnotation = ((access & Opcodes.ACC_ANNOTATION) != 0);
         this.isAbstract = ((access & Opcodes.ACC_ABSTRACT) != 0);
         this.isFinal = ((access & Opcodes.ACC_FINAL) != 0);
         if (supername != null && !this.isInterface) {
-            this.superClassName = ClassUtils.convertResourcePathToClassName(supername);
+            this.superClassName = toSharedClassName(supername);
         }
         this.interfaces = new String[interfaces.length];
         for (int i = 0; i < interfaces.length; i++) {
-            this.interfaces[i] = ClassUtils.convertResourcePathToClassName(interfaces[i]);
+            this.interfaces[i] = toSharedClassName(interfaces[i]);
         }
     }
 
     @Override
     public void visitOuterClass(String owner, String name, String desc) {
-        this.enclosingClassName = ClassUtils.convertResourcePathToClassName(owner);
+        this.enclosingClassName = toClassName(owner);
     }
 
     @Override
     public void visitInnerClass(String name, String outerName, String innerName, int access) {
         if (outerName != null) {
-            String innerClassName = ClassUtils.convertResourcePathToClassName(name);
-            String outerClassName = ClassUtils.convertResourcePathToClassName(outerName);
+            String innerClassName = toClassName(name);
+            String outerClassName = toClassName(outerName);
             if (this.className.equals(innerClassName)) {
                 this.enclosingClassName = outerClassName;
                 this.independentInnerClass = ((access & Opcodes.ACC_STATIC) != 0);
@@ -80,6 +92,18 @@ class ClassMetadataReadingVisitor extends ClassVisitor implements ClassMetadata
         }
     }
 
+    protected String toClassName(String internalName) {
+        return ClassUtils.convertResourcePathToClassName(internalName);
+    }
+
+    /**
+     * Convert a name likely to recur across classes, such as a super type, to the
+     * instance shared by all readers of the scan.
+     */
+    protected String toSharedClassName(String internalName) {
+        return (this.classNames != null ? this.classNames.toClassName(internalName) : toClassName(internalName));
+    }
+
     @Override
     public void visitSource(String source, String debug) {
         // no-op
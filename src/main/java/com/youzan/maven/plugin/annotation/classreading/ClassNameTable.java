@@ -0,0 +1,64 @@
+package com.youzan.maven.plugin.annotation.classreading;
+
+import org.springframework.asm.Type;
+import org.springframework.util.ClassUtils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Scan-scoped table of the class names shared by the readers of one scan.
+ * <p>Super classes, interfaces and annotation types recur across tens of thousands
+ * of classes while only a few thousand are distinct. The table hands out the same
+ * {@code String} instance for every occurrence of such a name, so the metadata
+ * retained for found services and by the class hierarchy shares its names instead
+ * of holding a copy per class. Names unique to a class, such as its own name or
+ * the names of its inner classes, are not worth a table entry and are left out.
+ * <p>Entries are keyed by class name only, so each name is held once. The table
+ * is only needed while classes are read and can be cleared once the scan is done.
+ * <p>Instances are thread-safe.
+ *
+ * @author yiji@apache.org
+ */
+public class ClassNameTable {
+
+    private final ConcurrentMap<String, String> names = new ConcurrentHashMap<String, String>(1024);
+
+
+    /**
+     * Return the shared class name for the given internal name, e.g. {@code a.b.C} for {@code a/b/C}.
+     */
+    public String toClassName(String internalName) {
+        return intern(ClassUtils.convertResourcePathToClassName(internalName));
+    }
+
+    /**
+     * Return the shared class name for the given type descriptor, e.g. {@code a.b.C} for {@code La/b/C;}.
+     */
+    public String descriptorToClassName(String descriptor) {
+        return intern(Type.getType(descriptor).getClassName());
+    }
+
+    /**
+     * Return the shared instance of the given class name.
+     */
+    public String intern(String className) {
+        String existing = this.names.putIfAbsent(className, className);
+        return (existing != null ? existing : className);
+    }
+
+    /**
+     * The number of class names held.
+     */
+    public int size() {
+        return this.names.size();
+    }
+
+    /**
+     * Drop all class names, the instances handed out so far stay valid.
+     */
+    public void clear() {
+        this.names.clear();
+    }
+
+}
@@ -0,0 +1,339 @@
+package com.youzan.maven.plugin.annotation.classreading;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.asm.ClassReader;
+import org.springframework.core.annotation.AnnotationAttributes;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.ObjectUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Thread-safe cache of the meta-annotations declared on annotation types, keyed by
+ * annotation type name.
+ * <p>Introspecting the meta-annotation graph of an annotation type requires reflection
+ * on every annotation in the graph. The result only depends on the annotation type, so a
+ * single cache can be shared by all readers created during one scan.
+ * <p>A cache created with a resource loader works on bytecode only: annotation types are
+ * located as {@code .class} resources and read with ASM, so no annotation type is ever loaded.
+ *
+ * @author yiji@apache.org
+ */
+public class MetaAnnotationCache {
+
+    private static final Log logger = LogFactory.getLog(MetaAnnotationCache.class);
+
+    private static final AnnotationType MISSING_TYPE = new AnnotationType(false, null, null);
+
+    private final ConcurrentMap<String, MetaAnnotations> cache = new ConcurrentHashMap<String, MetaAnnotations>(64);
+
+    private final ClassLoader resourceLoader;
+
+    private final ConcurrentMap<String, AnnotationType> annotationTypes;
+
+
+    /**
+     * Create a cache introspecting annotation types through reflection.
+     */
+    public MetaAnnotationCache() {
+        this.resourceLoader = null;
+        this.annotationTypes = null;
+    }
+
+    /**
+     * Create a cache reading annotation types from their class files.
+     *
+     * @param resourceLoader the ClassLoader used to locate {@code .class} resources,
+     *                       it is never asked to load a class
+     */
+    public MetaAnnotationCache(ClassLoader resourceLoader) {
+        this.resourceLoader = resourceLoader;
+        this.annotationTypes = new ConcurrentHashMap<String, AnnotationType>(64);
+    }
+
+
+    /**
+     * Whether this cache reads annotation types from bytecode instead of loading them.
+     */
+    public boolean isBytecodeOnly() {
+        return this.resourceLoader != null;
+    }
+
+    /**
+     * Return the meta-annotations of the given annotation type, introspecting it on first access.
+     */
+    public MetaAnnotations getMetaAnnotations(Class<? extends Annotation> annotationClass) {
+        MetaAnnotations metaAnnotations = this.cache.get(annotationClass.getName());
+        if (metaAnnotations == null) {
+            metaAnnotations = introspect(annotationClass);
+            MetaAnnotations existing = this.cache.putIfAbsent(annotationClass.getName(), metaAnnotations);
+            if (existing != null) {
+                metaAnnotations = existing;
+            }
+        }
+        return metaAnnotations;
+    }
+
+    /**
+     * Return the meta-annotations of the given annotation type, reading its class file
+     * on first access. Only supported by {@link #isBytecodeOnly() bytecode-only} caches.
+     *
+     * @param annotationName the fully qualified class name of the annotation type
+     * @return the meta-annotations, or {@code null} if the class file cannot be found
+     */
+    public MetaAnnotations getMetaAnnotations(String annotationName) {
+        if (!isBytecodeOnly()) {
+            throw new IllegalStateException("MetaAnnotationCache is not bytecode only");
+        }
+        MetaAnnotations metaAnnotations = this.cache.get(annotationName);
+        if (metaAnnotations == null) {
+            AnnotationType annotationType = getAnnotationType(annotationName);
+            if (annotationType == MISSING_TYPE) {
+                return null;
+            }
+            Set<String> visited = new LinkedHashSet<String>();
+            LinkedMultiValueMap<String, AnnotationAttributes> attributesMap =
+                    new LinkedMultiValueMap<String, AnnotationAttributes>(4);
+            collectMetaAnnotations(visited, attributesMap, annotationType);
+            metaAnnotations = new MetaAnnotations(visited, attributesMap, annotationType.defaults);
+            MetaAnnotations existing = this.cache.putIfAbsent(annotationName, metaAnnotations);
+            if (existing != null) {
+                metaAnnotations = existing;
+            }
+        }
+        return metaAnnotations;
+    }
+
+    public int size() {
+        return this.cache.size();
+    }
+
+    /**
+     * Return the names of the meta-annotation types of the given annotation type the way
+     * readers resolve them: from its class file for a {@link #isBytecodeOnly() bytecode-only}
+     * cache, otherwise by loading it through the given ClassLoader.
+     *
+     * @return the meta-annotation type names, or {@code null} if the annotation type cannot be found
+     */
+    @SuppressWarnings("unchecked")
+    public Set<String> getMetaAnnotationTypes(String annotationName, ClassLoader classLoader) {
+        if (isBytecodeOnly()) {
+            MetaAnnotations metaAnnotations = getMetaAnnotations(annotationName);
+            return (metaAnnotations != null ? metaAnnotations.getTypeNames() : null);
+        }
+        Class<?> annotationClass;
+        try {
+            annotationClass = ClassUtils.forName(annotationName, classLoader);
+        } catch (ClassNotFoundException ex) {
+            return null;
+        } catch (LinkageError ex) {
+            return null;
+        }
+        if (!annotationClass.isAnnotation()) {
+            return Collections.emptySet();
+        }
+        return getMetaAnnotations((Class<? extends Annotation>) annotationClass).getTypeNames();
+    }
+
+    /**
+     * Walk the meta-annotations of the given annotation type without any caching.
+     */
+    public static MetaAnnotations introspect(Class<? extends Annotation> annotationClass) {
+        Set<Annotation> visited = new LinkedHashSet<Annotation>();
+        LinkedMultiValueMap<String, AnnotationAttributes> attributesMap =
+                new LinkedMultiValueMap<String, AnnotationAttributes>(4);
+        Annotation[] metaAnnotations = AnnotationUtils.getAnnotations(annotationClass);
+        if (!ObjectUtils.isEmpty(metaAnnotations)) {
+            for (Annotation metaAnnotation : metaAnnotations) {
+                if (!AnnotationUtils.isInJavaLangAnnotationPackage(metaAnnotation)) {
+                    recursivelyCollectMetaAnnotations(visited, attributesMap, metaAnnotation);
+                }
+            }
+        }
+        Set<String> metaAnnotationTypeNames = new LinkedHashSet<String>(visited.size());
+        for (Annotation ann : visited) {
+            metaAnnotationTypeNames.add(ann.annotationType().getName());
+        }
+        return new MetaAnnotations(metaAnnotationTypeNames, attributesMap, null);
+    }
+
+    private static void recursivelyCollectMetaAnnotations(Set<Annotation> visited,
+                                                          LinkedMultiValueMap<String, AnnotationAttributes> attributesMap, Annotation annotation) {
+        Class<? extends Annotation> annotationType = annotation.annotationType();
+        String annotationName = annotationType.getName();
+        if (!AnnotationUtils.isInJavaLangAnnotationPackage(annotationName) && visited.add(annotation)) {
+            try {
+                // Only do attribute scanning for public annotations; we'd run into
+                // IllegalAccessExceptions otherwise, and we don't want to mess with
+                // accessibility in a SecurityManager environment.
+                if (Modifier.isPublic(annotationType.getModifiers())) {
+                    attributesMap.add(annotationName,
+                            AnnotationUtils.getAnnotationAttributes(annotation, false, true));
+                }
+                for (Annotation metaMetaAnnotation : annotationType.getAnnotations()) {
+                    recursivelyCollectMetaAnnotations(visited, attributesMap, metaMetaAnnotation);
+                }
+            }
+            catch (Throwable ex) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Failed to introspect meta-annotations on [" + annotation + "]: " + ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Bytecode counterpart of {@link #recursivelyCollectMetaAnnotations}, following the
+     * annotations declared on the given annotation type.
+     */
+    private void collectMetaAnnotations(Set<String> visited,
+                                        LinkedMultiValueMap<String, AnnotationAttributes> attributesMap, AnnotationType annotationType) {
+        for (Map.Entry<String, List<AnnotationAttributes>> entry : annotationType.annotations.entrySet()) {
+            String annotationName = entry.getKey();
+            if (!visited.add(annotationName)) {
+                continue;
+            }
+            AnnotationType metaAnnotationType = getAnnotationType(annotationName);
+            if (metaAnnotationType == MISSING_TYPE) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Failed to find class file of meta-annotation [" + annotationName + "]");
+                }
+                continue;
+            }
+            if (metaAnnotationType.isPublic) {
+                for (AnnotationAttributes declared : entry.getValue()) {
+                    AnnotationAttributes attributes = new AnnotationAttributes(declared);
+                    applyDefaults(metaAnnotationType.defaults, attributes);
+                    attributesMap.add(annotationName, attributes);
+                }
+            }
+            collectMetaAnnotations(visited, attributesMap, metaAnnotationType);
+        }
+    }
+
+    private AnnotationType getAnnotationType(String annotationName) {
+        AnnotationType annotationType = this.annotationTypes.get(annotationName);
+        if (annotationType == null) {
+            annotationType = readAnnotationType(annotationName);
+            AnnotationType existing = this.annotationTypes.putIfAbsent(annotationName, annotationType);
+            if (existing != null) {
+                annotationType = existing;
+            }
+        }
+        return annotationType;
+    }
+
+    private AnnotationType readAnnotationType(String annotationName) {
+        String resourcePath = ClassUtils.convertClassNameToResourcePath(annotationName) + ".class";
+        InputStream is = this.resourceLoader.getResourceAsStream(resourcePath);
+        if (is == null) {
+            return MISSING_TYPE;
+        }
+        try {
+            try {
+                AnnotationTypeReadingVisitor visitor = new AnnotationTypeReadingVisitor();
+                new ClassReader(is).accept(visitor, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+                return new AnnotationType(visitor.isPublic(), visitor.getDefaults(), visitor.getAnnotations());
+            } finally {
+                is.close();
+            }
+        } catch (IOException ex) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Failed to read class file of annotation [" + annotationName + "]: " + ex);
+            }
+            return MISSING_TYPE;
+        }
+    }
+
+    private static void applyDefaults(AnnotationAttributes defaults, AnnotationAttributes attributes) {
+        if (defaults == null) {
+            return;
+        }
+        for (Map.Entry<String, Object> entry : defaults.entrySet()) {
+            if (!attributes.containsKey(entry.getKey())) {
+                attributes.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+
+    /**
+     * The declaration of an annotation type as read from its class file.
+     */
+    private static final class AnnotationType {
+
+        private final boolean isPublic;
+
+        private final AnnotationAttributes defaults;
+
+        private final LinkedMultiValueMap<String, AnnotationAttributes> annotations;
+
+        AnnotationType(boolean isPublic, AnnotationAttributes defaults,
+                       LinkedMultiValueMap<String, AnnotationAttributes> annotations) {
+            this.isPublic = isPublic;
+            this.defaults = defaults;
+            this.annotations = annotations;
+        }
+    }
+
+
+    /**
+     * The meta-annotation type names of an annotation type, and the attributes of
+     * every public meta-annotation in the order they were encountered.
+     */
+    public static final class MetaAnnotations {
+
+        private final Set<String> typeNames;
+
+        private final LinkedMultiValueMap<String, AnnotationAttributes> attributesMap;
+
+        private final AnnotationAttributes defaults;
+
+        MetaAnnotations(Set<String> typeNames, LinkedMultiValueMap<String, AnnotationAttributes> attributesMap,
+                        AnnotationAttributes defaults) {
+            this.typeNames = Collections.unmodifiableSet(typeNames);
+            this.attributesMap = attributesMap;
+            this.defaults = defaults;
+        }
+
+        public Set<String> getTypeNames() {
+            return this.typeNames;
+        }
+
+        /**
+         * Add copies of the meta-annotation attributes to the given map, so that
+         * readers cannot modify the cached instances.
+         */
+        void addAttributesTo(MultiValueMap<String, AnnotationAttributes> target) {
+            for (Map.Entry<String, List<AnnotationAttributes>> entry : this.attributesMap.entrySet()) {
+                for (AnnotationAttributes attributes : entry.getValue()) {
+                    target.add(entry.getKey(), new AnnotationAttributes(attributes));
+                }
+            }
+        }
+
+        /**
+         * Fill in the default values read from the class file of the annotation type,
+         * for attributes not declared explicitly. A no-op for reflective introspection,
+         * where defaults are registered from the loaded annotation type.
+         */
+        void applyDefaultsTo(AnnotationAttributes attributes) {
+            applyDefaults(this.defaults, attributes);
+        }
+    }
+
+}
@@ -5,11 +5,8 @@ import com.youzan.maven.plugin.annotation.ClassMetadata;
 
 import org.springframework.asm.ClassReader;
 
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 
 /**
  * @author yiji@apache.org
@@ -23,19 +20,63 @@ public final class SimpleMetadataReader implements MetadataReader {
     private final AnnotationMetadata annotationMetadata;
 
     public SimpleMetadataReader(File file, ClassLoader classLoader) throws IOException {
-        InputStream is = new BufferedInputStream(new FileInputStream(file));
-        ClassReader classReader;
-        try {
-            classReader = new ClassReader(is);
-        } catch (IllegalArgumentException ex) {
-            throw new RuntimeException("ASM ClassReader failed to parse class file - " +
-                    "probably due to a new Java class file version that isn't supported yet: " + file, ex);
-        } finally {
-            is.close();
-        }
+        this(file, classLoader, true);
+    }
 
-        AnnotationMetadataReadingVisitor visitor = new AnnotationMetadataReadingVisitor(classLoader);
-        classReader.accept(visitor, ClassReader.SKIP_DEBUG);
+    /**
+     * Create a reader for the given class file.
+     *
+     * @param readMethodMetadata whether to build metadata for methods, if {@code false}
+     *                           method bodies, debug information and stack map frames
+     *                           are skipped and only class-level information is read
+     */
+    public SimpleMetadataReader(File file, ClassLoader classLoader, boolean readMethodMetadata) throws IOException {
+        this(file, readClass(file), classLoader, readMethodMetadata, null, null);
+    }
+
+    /**
+     * Create a reader for class file content that has already been loaded,
+     * e.g. by a pre-filter, avoiding a second read of the file.
+     */
+    public SimpleMetadataReader(File file, byte[] classBytes, ClassLoader classLoader) {
+        this(file, classBytes, classLoader, true);
+    }
+
+    /**
+     * Create a reader for class file content that has already been loaded.
+     *
+     * @see #SimpleMetadataReader(File, ClassLoader, boolean)
+     */
+    public SimpleMetadataReader(File file, byte[] classBytes, ClassLoader classLoader, boolean readMethodMetadata) {
+        this(file, newClassReader(file, classBytes, classBytes.length), classLoader, readMethodMetadata, null, null);
+    }
+
+    SimpleMetadataReader(File file, ClassLoader classLoader, boolean readMethodMetadata,
+                         MetaAnnotationCache metaAnnotationCache, ClassNameTable classNames) throws IOException {
+        this(file, readClass(file), classLoader, readMethodMetadata, metaAnnotationCache, classNames);
+    }
+
+    SimpleMetadataReader(File file, byte[] classBytes, ClassLoader classLoader, boolean readMethodMetadata,
+                         MetaAnnotationCache metaAnnotationCache, ClassNameTable classNames) {
+        this(file, classBytes, classBytes.length, classLoader, readMethodMetadata, metaAnnotationCache, classNames);
+    }
+
+    /**
+     * Create a reader for the first {@code length} bytes of the given array, which is
+     * only read during construction and may be reused afterwards.
+     */
+    SimpleMetadataReader(File file, byte[] classBytes, int length, ClassLoader classLoader, boolean readMethodMetadata,
+                         MetaAnnotationCache metaAnnotationCache, ClassNameTable classNames) {
+        this(file, newClassReader(file, classBytes, length), classLoader, readMethodMetadata, metaAnnotationCache,
+                classNames);
+    }
+
+    private SimpleMetadataReader(File file, ClassReader classReader, ClassLoader classLoader, boolean readMethodMetadata,
+                                 MetaAnnotationCache metaAnnotationCache, ClassNameTable classNames) {
+        AnnotationMetadataReadingVisitor visitor =
+                new AnnotationMetadataReadingVisitor(classLoader, readMethodMetadata, metaAnnotationCache, classNames);
+        classReader.accept(visitor, readMethodMetadata ? ClassReader.SKIP_DEBUG
+                : ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
 
         this.annotationMetadata = visitor;
         // (since AnnotationMetadataReadingVisitor extends ClassMetadataReadingVisitor)
@@ -43,6 +84,28 @@ public final class SimpleMetadataReader implements MetadataReader {
         this.file = file;
     }
 
+    /**
+     * Read the class file into the buffer of the calling thread, the class reader is
+     * only used during construction.
+     */
+    private static ClassReader readClass(File file) throws IOException {
+        ClassFileBuffer buffer = ClassFileBuffer.read(file);
+        return newClassReader(file, buffer.array(), buffer.length());
+    }
+
+    private static ClassReader newClassReader(File file, byte[] classBytes, int length) {
+        try {
+            return new ClassReader(classBytes, 0, length);
+        } catch (IllegalArgumentException ex) {
+            throw unsupportedClassFile(file, ex);
+        }
+    }
+
+    private static RuntimeException unsupportedClassFile(File file, IllegalArgumentException ex) {
+        return new RuntimeException("ASM ClassReader failed to parse class file - " +
+                "probably due to a new Java class file version that isn't supported yet: " + file, ex);
+    }
+
 
     @Override
     public File getResource() {
@@ -0,0 +1,191 @@
+package com.youzan.maven.plugin.annotation.classreading;
+
+import com.youzan.maven.plugin.annotation.ClassMetadata;
+
+import org.springframework.asm.ClassReader;
+import org.springframework.util.ClassUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+
+/**
+ * Creates {@link SimpleMetadataReader} instances sharing the state of one scan,
+ * such as the {@link MetaAnnotationCache} and the {@link ClassNameTable}.
+ * <p>Instances are thread-safe and may be used by concurrent scanner threads.
+ *
+ * @author yiji@apache.org
+ */
+public class SimpleMetadataReaderFactory {
+
+    private final ClassLoader classLoader;
+
+    private final boolean readMethodMetadata;
+
+    private final MetaAnnotationCache metaAnnotationCache;
+
+    private final ClassLoader resourceLoader;
+
+    private final ClassNameTable classNames = new ClassNameTable();
+
+
+    /**
+     * Create a new factory reading full class metadata with a private meta-annotation cache.
+     */
+    public SimpleMetadataReaderFactory(ClassLoader classLoader) {
+        this(classLoader, true, new MetaAnnotationCache());
+    }
+
+    /**
+     * Create a new factory.
+     *
+     * @param classLoader         the ClassLoader to use for resolving annotation types
+     * @param readMethodMetadata  whether readers should build method metadata
+     * @param metaAnnotationCache the meta-annotation cache shared by all readers
+     */
+    public SimpleMetadataReaderFactory(ClassLoader classLoader, boolean readMethodMetadata,
+                                       MetaAnnotationCache metaAnnotationCache) {
+        this(classLoader, readMethodMetadata, metaAnnotationCache, classLoader);
+    }
+
+    /**
+     * Create a new factory.
+     *
+     * @param classLoader         the ClassLoader to use for resolving annotation types
+     * @param readMethodMetadata  whether readers should build method metadata
+     * @param metaAnnotationCache the meta-annotation cache shared by all readers
+     * @param resourceLoader      the ClassLoader to locate class files by class name, may be {@code null}
+     */
+    public SimpleMetadataReaderFactory(ClassLoader classLoader, boolean readMethodMetadata,
+                                       MetaAnnotationCache metaAnnotationCache, ClassLoader resourceLoader) {
+        this.classLoader = classLoader;
+        this.readMethodMetadata = readMethodMetadata;
+        this.metaAnnotationCache = metaAnnotationCache;
+        this.resourceLoader = resourceLoader;
+    }
+
+
+    /**
+     * Read the class file of the given class through the resource loader, nested
+     * classes may be named with {@code .} or {@code $}.
+     *
+     * @throws FileNotFoundException if the class file cannot be found
+     */
+    public MetadataReader getMetadataReader(String className) throws IOException {
+        URL url = findClassFile(className);
+        return getMetadataReader(toFile(url), readBytes(url));
+    }
+
+    /**
+     * Read only the class-level information of the given class through the resource
+     * loader, e.g. its super class and interfaces. Annotations are not introspected,
+     * method bodies, debug information and stack map frames are skipped.
+     *
+     * @throws FileNotFoundException if the class file cannot be found
+     * @throws IOException           if the class file cannot be read or parsed
+     */
+    public ClassMetadata getClassMetadata(String className) throws IOException {
+        URL url = findClassFile(className);
+        ClassReader classReader;
+        try {
+            classReader = new ClassReader(readBytes(url));
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("ASM ClassReader failed to parse class file " + url, ex);
+        }
+        ClassMetadataReadingVisitor visitor = new ClassMetadataReadingVisitor(this.classNames);
+        classReader.accept(visitor, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        return visitor;
+    }
+
+    public MetadataReader getMetadataReader(File file) throws IOException {
+        return new SimpleMetadataReader(file, this.classLoader, this.readMethodMetadata, this.metaAnnotationCache,
+                this.classNames);
+    }
+
+    public MetadataReader getMetadataReader(File file, byte[] classBytes) {
+        return new SimpleMetadataReader(file, classBytes, this.classLoader, this.readMethodMetadata, this.metaAnnotationCache,
+                this.classNames);
+    }
+
+    /**
+     * Create a reader for the first {@code length} bytes of the given array, e.g. a
+     * {@link ClassFileBuffer}, which may be reused once the reader is created.
+     */
+    public MetadataReader getMetadataReader(File file, byte[] classBytes, int length) {
+        return new SimpleMetadataReader(file, classBytes, length, this.classLoader, this.readMethodMetadata,
+                this.metaAnnotationCache, this.classNames);
+    }
+
+    public ClassLoader getResourceLoader() {
+        return this.resourceLoader;
+    }
+
+    public ClassLoader getClassLoader() {
+        return this.classLoader;
+    }
+
+    public MetaAnnotationCache getMetaAnnotationCache() {
+        return this.metaAnnotationCache;
+    }
+
+    public ClassNameTable getClassNames() {
+        return this.classNames;
+    }
+
+    private URL findClassFile(String className) throws FileNotFoundException {
+        String resourcePath = ClassUtils.convertClassNameToResourcePath(className) + ".class";
+        URL url = (this.resourceLoader != null ? this.resourceLoader.getResource(resourcePath) : null);
+        if (url == null) {
+            int lastDotIndex = className.lastIndexOf('.');
+            if (lastDotIndex != -1) {
+                String innerClassName = className.substring(0, lastDotIndex) + '$' + className.substring(lastDotIndex + 1);
+                String innerResourcePath = ClassUtils.convertClassNameToResourcePath(innerClassName) + ".class";
+                url = (this.resourceLoader != null ? this.resourceLoader.getResource(innerResourcePath) : null);
+            }
+            if (url == null) {
+                throw new FileNotFoundException("Class file of [" + className + "] not found");
+            }
+        }
+        return url;
+    }
+
+    private static byte[] readBytes(URL url) throws IOException {
+        InputStream is = url.openStream();
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        } finally {
+            is.close();
+        }
+    }
+
+    /**
+     * Return the class file, or the jar containing it.
+     */
+    private static File toFile(URL url) {
+        String location = url.toString();
+        if ("jar".equals(url.getProtocol()) && location.indexOf("!/") > 0) {
+            location = location.substring("jar:".length(), location.indexOf("!/"));
+        }
+        try {
+            URL fileUrl = new URL(location);
+            return ("file".equals(fileUrl.getProtocol()) ? new File(fileUrl.toURI()) : null);
+        } catch (IOException ex) {
+            return null;
+        } catch (URISyntaxException ex) {
+            return null;
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,171 @@
+package com.youzan.maven.plugin.descriptor;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a descriptor written by {@link BinaryDescriptorWriter}.
+ * <p>Only depends on the JDK, so consumers can copy it as is. The string table
+ * is decoded once; services are kept as string indexes and only turned into
+ * maps on request. The section lengths are checked against the content read, so
+ * a truncated or corrupt descriptor is rejected.
+ *
+ * @author yiji@apache.org
+ */
+public final class BinaryDescriptorReader {
+
+    private static final int MAGIC = 0x44534244;
+
+    private static final short VERSION = 1;
+
+    private static final String INTERFACE_KEY = "interfaceClass";
+
+    private final String[] strings;
+
+    private final int[][] services;
+
+
+    public BinaryDescriptorReader(byte[] bytes) throws IOException {
+        ByteArrayInputStream buffer = new ByteArrayInputStream(bytes);
+        DataInputStream input = new DataInputStream(buffer);
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Not a binary service descriptor");
+        }
+        short version = input.readShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary service descriptor version " + version);
+        }
+
+        int end = sectionEnd(bytes, buffer, input.readInt(), "string table");
+        this.strings = new String[readCount(input, bytes, buffer, end, 2)];
+        for (int i = 0; i < this.strings.length; i++) {
+            this.strings[i] = input.readUTF();
+        }
+        checkSectionEnd(bytes, buffer, end, "string table");
+
+        end = sectionEnd(bytes, buffer, input.readInt(), "service section");
+        this.services = new int[readCount(input, bytes, buffer, end, 10)][];
+        for (int i = 0; i < this.services.length; i++) {
+            int packageIndex = readIndex(input, true);
+            int nameIndex = readIndex(input, true);
+            if ((packageIndex < 0) != (nameIndex < 0)) {
+                throw new IOException("Corrupt binary service descriptor, interface indexes "
+                        + packageIndex + " and " + nameIndex + " of service " + i);
+            }
+            int[] service = new int[2 + 2 * input.readUnsignedShort()];
+            service[0] = packageIndex;
+            service[1] = nameIndex;
+            for (int j = 2; j < service.length; j++) {
+                service[j] = readIndex(input, false);
+            }
+            this.services[i] = service;
+        }
+        checkSectionEnd(bytes, buffer, end, "service section");
+        if (buffer.available() > 0) {
+            throw new IOException("Corrupt binary service descriptor, " + buffer.available() + " trailing bytes");
+        }
+    }
+
+    public static BinaryDescriptorReader read(Path file) throws IOException {
+        return new BinaryDescriptorReader(Files.readAllBytes(file));
+    }
+
+
+    public String getApplicationName() {
+        return this.strings[0];
+    }
+
+    public int getServiceCount() {
+        return this.services.length;
+    }
+
+    /**
+     * Return the fully qualified interface name of the given service, or {@code null}.
+     */
+    public String getInterfaceName(int service) {
+        int[] record = this.services[service];
+        if (record[1] < 0) {
+            return null;
+        }
+        String packageName = this.strings[record[0]];
+        String simpleName = this.strings[record[1]];
+        return (packageName.isEmpty() ? simpleName : packageName + '.' + simpleName);
+    }
+
+    /**
+     * Return the attributes of the given service, {@code interfaceClass} first,
+     * as they appear in the {@code content} annotation.
+     */
+    public Map<String, String> getService(int service) {
+        int[] record = this.services[service];
+        Map<String, String> attributes = new LinkedHashMap<String, String>(record.length);
+        String interfaceName = getInterfaceName(service);
+        if (interfaceName != null) {
+            attributes.put(INTERFACE_KEY, interfaceName);
+        }
+        for (int i = 2; i < record.length; i += 2) {
+            attributes.put(this.strings[record[i]], this.strings[record[i + 1]]);
+        }
+        return attributes;
+    }
+
+    public List<Map<String, String>> getServices() {
+        List<Map<String, String>> services = new ArrayList<Map<String, String>>(this.services.length);
+        for (int i = 0; i < this.services.length; i++) {
+            services.add(getService(i));
+        }
+        return Collections.unmodifiableList(services);
+    }
+
+    /**
+     * Return the offset the section of the given length, starting at the current offset, ends at.
+     */
+    private static int sectionEnd(byte[] bytes, ByteArrayInputStream buffer, int length, String section)
+            throws IOException {
+        int start = bytes.length - buffer.available();
+        if (length < 4 || length > buffer.available()) {
+            throw new IOException("Corrupt binary service descriptor, " + section + " of " + length
+                    + " bytes at offset " + start + " in " + bytes.length + " bytes");
+        }
+        return start + length;
+    }
+
+    private static void checkSectionEnd(byte[] bytes, ByteArrayInputStream buffer, int end, String section)
+            throws IOException {
+        int offset = bytes.length - buffer.available();
+        if (offset != end) {
+            throw new IOException("Corrupt binary service descriptor, " + section + " ends at offset " + offset
+                    + " instead of " + end);
+        }
+    }
+
+    /**
+     * Read an entry count, rejecting counts the rest of the section cannot hold.
+     */
+    private static int readCount(DataInputStream input, byte[] bytes, ByteArrayInputStream buffer, int end,
+                                 int minEntrySize) throws IOException {
+        int count = input.readInt();
+        int remaining = end - (bytes.length - buffer.available());
+        if (count < 0 || (long) count * minEntrySize > remaining) {
+            throw new IOException("Corrupt binary service descriptor, count " + count);
+        }
+        return count;
+    }
+
+    private int readIndex(DataInputStream input, boolean optional) throws IOException {
+        int index = input.readInt();
+        if ((index < 0 && !(optional && index == -1)) || index >= this.strings.length) {
+            throw new IOException("Corrupt binary service descriptor, string index " + index);
+        }
+        return index;
+    }
+
+}
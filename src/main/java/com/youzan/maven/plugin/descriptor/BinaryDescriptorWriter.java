@@ -0,0 +1,169 @@
+package com.youzan.maven.plugin.descriptor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the services as a compact binary descriptor, read back by {@link BinaryDescriptorReader}.
+ * <p>All numbers are big endian, strings are modified UTF-8 prefixed by their
+ * unsigned 16 bit length ({@link DataOutputStream#writeUTF}):
+ * <pre class="code">
+ * int    magic            'DSBD'
+ * short  version          1
+ * int    table length     bytes of the string table that follows
+ * int    string count
+ * utf    strings...       index 0 is the application name
+ * int    services length  bytes of the service section that follows
+ * int    service count
+ * per service:
+ *   int  package          string index of the interface package, -1 if none
+ *   int  simple name      string index of the interface simple name, -1 if none
+ *   short attribute count
+ *   int  key, int value   string indexes, in attribute order
+ * </pre>
+ * Every string, package names and simple names included, is stored once, so
+ * interfaces of the same package and repeated versions or groups cost four
+ * bytes per occurrence. A string takes at most {@value #MAX_STRING_LENGTH} bytes
+ * and a service at most {@value #MAX_ATTRIBUTES} attributes, a service exceeding
+ * either is rejected.
+ *
+ * @author yiji@apache.org
+ */
+public class BinaryDescriptorWriter {
+
+    public static final int MAGIC = 0x44534244;
+
+    public static final short VERSION = 1;
+
+    static final String INTERFACE_KEY = "interfaceClass";
+
+    static final int MAX_STRING_LENGTH = 0xFFFF;
+
+    static final int MAX_ATTRIBUTES = 0xFFFF;
+
+    private final Map<String, Integer> indexes = new HashMap<String, Integer>(256);
+
+    private final List<String> strings = new ArrayList<String>(256);
+
+    private final ByteArrayOutputStream records = new ByteArrayOutputStream(4096);
+
+    private final DataOutputStream recordOutput = new DataOutputStream(this.records);
+
+    private int services;
+
+
+    /**
+     * @param applicationName the application name, stored as the first string
+     */
+    public BinaryDescriptorWriter(String applicationName) {
+        intern(applicationName != null ? applicationName : "");
+    }
+
+
+    /**
+     * Add a service.
+     *
+     * @param attributes the service attributes as written to the {@code content}
+     *                   annotation, {@code interfaceClass} included
+     * @throws IOException if the service exceeds the limits of the format
+     */
+    public void addService(Map<String, String> attributes) throws IOException {
+        String interfaceName = attributes.get(INTERFACE_KEY);
+        int count = attributes.size() - (attributes.containsKey(INTERFACE_KEY) ? 1 : 0);
+        if (count > MAX_ATTRIBUTES) {
+            throw new IOException("Service '" + interfaceName + "' has " + count
+                    + " attributes, the binary service descriptor holds at most " + MAX_ATTRIBUTES);
+        }
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            checkLength(interfaceName, attribute.getKey());
+            checkLength(interfaceName, attribute.getValue());
+        }
+
+        if (interfaceName == null) {
+            this.recordOutput.writeInt(-1);
+            this.recordOutput.writeInt(-1);
+        } else {
+            int separator = interfaceName.lastIndexOf('.');
+            this.recordOutput.writeInt(intern(separator > 0 ? interfaceName.substring(0, separator) : ""));
+            this.recordOutput.writeInt(intern(interfaceName.substring(separator + 1)));
+        }
+
+        this.recordOutput.writeShort(count);
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            if (!INTERFACE_KEY.equals(attribute.getKey())) {
+                this.recordOutput.writeInt(intern(attribute.getKey()));
+                this.recordOutput.writeInt(intern(attribute.getValue() != null ? attribute.getValue() : ""));
+            }
+        }
+        this.services++;
+    }
+
+    /**
+     * The number of services added so far.
+     */
+    public int getServiceCount() {
+        return this.services;
+    }
+
+    /**
+     * Return the complete descriptor.
+     */
+    public byte[] toByteArray() throws IOException {
+        ByteArrayOutputStream table = new ByteArrayOutputStream(this.strings.size() * 24);
+        DataOutputStream tableOutput = new DataOutputStream(table);
+        tableOutput.writeInt(this.strings.size());
+        for (String string : this.strings) {
+            tableOutput.writeUTF(string);
+        }
+        tableOutput.flush();
+        this.recordOutput.flush();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + table.size() + this.records.size());
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(MAGIC);
+        output.writeShort(VERSION);
+        output.writeInt(table.size());
+        table.writeTo(output);
+        output.writeInt(4 + this.records.size());
+        output.writeInt(this.services);
+        this.records.writeTo(output);
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Fail before anything is written if a string does not fit the unsigned 16 bit
+     * length prefix of {@link DataOutputStream#writeUTF}.
+     */
+    private static void checkLength(String interfaceName, String string) throws IOException {
+        if (string == null || string.length() * 3 <= MAX_STRING_LENGTH) {
+            return;
+        }
+        long length = 0;
+        for (int i = 0; i < string.length(); i++) {
+            char ch = string.charAt(i);
+            length += (ch >= 0x0001 && ch <= 0x007F ? 1 : ch <= 0x07FF ? 2 : 3);
+        }
+        if (length > MAX_STRING_LENGTH) {
+            throw new IOException("Service '" + interfaceName + "' has a value of " + length
+                    + " bytes, the binary service descriptor holds at most " + MAX_STRING_LENGTH
+                    + " bytes per string: " + string.substring(0, 64) + "...");
+        }
+    }
+
+    private int intern(String string) {
+        Integer index = this.indexes.get(string);
+        if (index == null) {
+            index = this.strings.size();
+            this.strings.add(string);
+            this.indexes.put(string, index);
+        }
+        return index;
+    }
+
+}
@@ -0,0 +1,164 @@
+package com.youzan.maven.plugin.descriptor;
+
+import org.xerial.snappy.Snappy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Encodings of the service list stored in the {@code content} annotation.
+ * <p>Compressed encodings store the base64 of the compressed UTF-8 JSON and are
+ * named by the {@code content-encoding} annotation next to it; {@link #IDENTITY}
+ * stores the JSON as is and has no {@code content-encoding} annotation.
+ *
+ * @author yiji@apache.org
+ */
+public enum ContentEncoding {
+
+    /**
+     * Choose the first encoding, in declaration order, whose content fits the annotation size limit.
+     */
+    AUTO("auto", null),
+
+    IDENTITY("identity", null),
+
+    /**
+     * Raw snappy block, fast but with a modest ratio.
+     */
+    SNAPPY("snappy", new SnappyCodec()),
+
+    /**
+     * zlib stream, slower than snappy but typically half its size on JSON.
+     */
+    DEFLATE("deflate", new DeflateCodec());
+
+    private final String name;
+
+    private final Codec codec;
+
+    ContentEncoding(String name, Codec codec) {
+        this.name = name;
+        this.codec = codec;
+    }
+
+    /**
+     * The value of the {@code content-encoding} annotation, or of the plugin parameter.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Whether the content is stored compressed and base64 encoded.
+     */
+    public boolean isCompressed() {
+        return this.codec != null;
+    }
+
+    /**
+     * Encode the UTF-8 JSON into the annotation value.
+     */
+    public String encode(byte[] json) throws IOException {
+        return Base64.getEncoder().encodeToString(getCodec().compress(json));
+    }
+
+    /**
+     * Decode an annotation value back into the UTF-8 JSON.
+     */
+    public byte[] decode(String content) throws IOException {
+        return getCodec().uncompress(Base64.getDecoder().decode(content));
+    }
+
+    private Codec getCodec() {
+        if (this.codec == null) {
+            throw new IllegalStateException("Encoding " + this + " does not compress");
+        }
+        return this.codec;
+    }
+
+    /**
+     * Resolve an encoding by its annotation value or constant name, ignoring case.
+     *
+     * @throws IllegalArgumentException if the encoding is unknown
+     */
+    public static ContentEncoding forName(String name) {
+        for (ContentEncoding encoding : values()) {
+            if (encoding.name().equalsIgnoreCase(name) || encoding.name.equalsIgnoreCase(name)) {
+                return encoding;
+            }
+        }
+        throw new IllegalArgumentException("Unknown content encoding '" + name
+                + "', expected one of auto, identity, snappy, deflate");
+    }
+
+
+    /**
+     * Compression of a {@link #isCompressed() compressed} encoding.
+     */
+    private interface Codec {
+
+        byte[] compress(byte[] bytes) throws IOException;
+
+        byte[] uncompress(byte[] bytes) throws IOException;
+    }
+
+    private static final class SnappyCodec implements Codec {
+
+        @Override
+        public byte[] compress(byte[] bytes) throws IOException {
+            return Snappy.compress(bytes);
+        }
+
+        @Override
+        public byte[] uncompress(byte[] bytes) throws IOException {
+            return Snappy.uncompress(bytes);
+        }
+    }
+
+    private static final class DeflateCodec implements Codec {
+
+        @Override
+        public byte[] compress(byte[] bytes) {
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try {
+                deflater.setInput(bytes);
+                deflater.finish();
+                ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, bytes.length / 4));
+                byte[] buffer = new byte[8192];
+                while (!deflater.finished()) {
+                    output.write(buffer, 0, deflater.deflate(buffer));
+                }
+                return output.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+
+        @Override
+        public byte[] uncompress(byte[] bytes) throws IOException {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(bytes);
+                ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length * 4);
+                byte[] buffer = new byte[8192];
+                while (!inflater.finished()) {
+                    int count = inflater.inflate(buffer);
+                    if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new IOException("Truncated deflate content");
+                    }
+                    output.write(buffer, 0, count);
+                }
+                return output.toByteArray();
+            } catch (DataFormatException e) {
+                throw new IOException("Malformed deflate content", e);
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+}
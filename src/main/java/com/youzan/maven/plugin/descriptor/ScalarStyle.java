@@ -0,0 +1,138 @@
+package com.youzan.maven.plugin.descriptor;
+
+/**
+ * Styles of a block mapping value, chosen the way the yamlbeans emitter chooses them
+ * for a {@code String}, so the descriptor reads the same as the one yamlbeans wrote.
+ * <p>A value is plain unless it would read back differently, single quoted unless it
+ * spans lines or holds characters outside printable ASCII, which yamlbeans escapes
+ * in double quotes. Strings that parse as a number are always quoted.
+ *
+ * @author yiji@apache.org
+ */
+enum ScalarStyle {
+
+    PLAIN, SINGLE_QUOTED, DOUBLE_QUOTED, LITERAL;
+
+    private static final String SPECIAL_INDICATORS = "#,[]{}&*!|>'\"%@`";
+
+    private static final String BLANKS = "\0 \t\r\n\u0085";
+
+
+    /**
+     * Choose the style of the given value.
+     */
+    static ScalarStyle of(String value) {
+        if (value == null) {
+            return PLAIN;
+        }
+        if (value.isEmpty()) {
+            return DOUBLE_QUOTED;
+        }
+        boolean blockIndicators = value.equals("---") || value.equals("...");
+        boolean lineBreaks = false;
+        boolean specialCharacters = false;
+        boolean inlineBreaks = false;
+        boolean leadingSpaces = false;
+        boolean leadingBreaks = false;
+        boolean trailingSpaces = false;
+        boolean trailingBreaks = false;
+        boolean inlineBreaksSpaces = false;
+        boolean mixedBreaksSpaces = false;
+
+        boolean precededBySpace = true;
+        boolean followedBySpace = (value.length() == 1 || BLANKS.indexOf(value.charAt(1)) >= 0);
+        boolean spaces = false;
+        boolean breaks = false;
+        boolean mixed = false;
+        boolean leading = false;
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (i == 0) {
+                if (SPECIAL_INDICATORS.indexOf(ch) >= 0 || ((ch == '?' || ch == ':' || ch == '-') && followedBySpace)) {
+                    blockIndicators = true;
+                }
+            } else if ((ch == ':' && followedBySpace) || (ch == '#' && precededBySpace)) {
+                blockIndicators = true;
+            }
+            if (ch == '\n' || ch == '\u0085') {
+                lineBreaks = true;
+            }
+            if (ch != '\n' && ch != '\t' && (ch < ' ' || ch > '~')) {
+                specialCharacters = true;
+            }
+            if (ch == ' ' || ch == '\n' || ch == '\u0085') {
+                if (spaces && breaks) {
+                    mixed |= (ch != ' ');
+                } else if (spaces) {
+                    if (ch != ' ') {
+                        breaks = true;
+                        mixed = true;
+                    }
+                } else if (breaks) {
+                    spaces |= (ch == ' ');
+                } else {
+                    leading = (i == 0);
+                    spaces = (ch == ' ');
+                    breaks = (ch != ' ');
+                }
+            } else if (spaces || breaks) {
+                if (leading) {
+                    mixedBreaksSpaces |= (spaces && breaks);
+                    leadingSpaces |= (spaces && !breaks);
+                    leadingBreaks |= (breaks && !spaces);
+                } else if (mixed) {
+                    mixedBreaksSpaces = true;
+                } else if (spaces && breaks) {
+                    inlineBreaksSpaces = true;
+                } else if (breaks) {
+                    inlineBreaks = true;
+                }
+                leading = mixed = breaks = spaces = false;
+            }
+            if ((spaces || breaks) && i == value.length() - 1) {
+                if (spaces && breaks) {
+                    mixedBreaksSpaces = true;
+                } else if (spaces) {
+                    trailingSpaces = true;
+                    leadingSpaces |= leading;
+                } else {
+                    trailingBreaks = true;
+                    leadingBreaks |= leading;
+                }
+                leading = mixed = breaks = spaces = false;
+            }
+            precededBySpace = (BLANKS.indexOf(ch) >= 0);
+            followedBySpace = (i + 2 >= value.length() || BLANKS.indexOf(value.charAt(i + 2)) >= 0);
+        }
+
+        boolean allowPlain = !(leadingSpaces || leadingBreaks || trailingSpaces || trailingBreaks
+                || inlineBreaksSpaces || mixedBreaksSpaces || specialCharacters || inlineBreaks
+                || lineBreaks || blockIndicators);
+        boolean allowSingleQuoted = !(inlineBreaksSpaces || mixedBreaksSpaces || specialCharacters
+                || inlineBreaks || trailingBreaks);
+        boolean allowBlock = !(leadingSpaces || leadingBreaks || trailingSpaces || mixedBreaksSpaces
+                || specialCharacters);
+
+        boolean number = isNumber(value);
+        if (!number && allowPlain) {
+            return PLAIN;
+        }
+        if (allowSingleQuoted) {
+            return SINGLE_QUOTED;
+        }
+        if (!number && lineBreaks && allowBlock) {
+            return LITERAL;
+        }
+        return DOUBLE_QUOTED;
+    }
+
+    private static boolean isNumber(String value) {
+        try {
+            Float.parseFloat(value);
+            return true;
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,730 @@
+package com.youzan.maven.plugin.descriptor;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams the k8s service descriptor to a channel, one service at a time.
+ * <p>The document has a fixed shape, so instead of building the whole tree and
+ * handing it to a YAML library, the writer emits it in order:
+ * <pre class="code">
+ * kind: Service
+ * apiVersion: v1
+ * metadata: 
+ *    name: app
+ *    annotations: 
+ *       content: '[{"interfaceClass":"..."},...]'
+ * spec: 
+ *    selector: 
+ *       app: app
+ *    ports: 
+ *    -  protocol: TCP
+ *       port: '8080'
+ *    clusterIP: None
+ * </pre>
+ * The output is the one yamlbeans produces for the same document: three space
+ * indentation with a space after the keys of nested blocks, sequences not indented
+ * below their key, and values styled and folded past the wrap column as yamlbeans
+ * does, see {@link ScalarStyle}.
+ * <p>With {@link ContentEncoding#IDENTITY} the service list is held back until it
+ * is complete or exceeds the content limit, as its style depends on all of it.
+ * Past the limit the rest of the document streams, single quoted, so memory stays
+ * flat however many services there are. With a compressed {@link ContentEncoding}
+ * the service list is collected as JSON, compressed once complete and written
+ * base64 encoded, preceded by a {@code content-encoding} annotation.
+ * {@link ContentEncoding#AUTO} keeps the plain JSON unless it exceeds the content
+ * limit, in which case the first compressed encoding that fits is used; until the
+ * encoding is known the document head and the services are held back, which takes
+ * no more than the content limit as long as the list fits.
+ * <p>Content sizes and the content limit are counted in UTF-8 bytes, as the k8s
+ * annotation size limit is.
+ * <p>A collected list that does not fit the content limit even once encoded is
+ * split into shards of consecutive services, each written as its own Service
+ * document named {@code <name>-<index>} (the first keeps {@code <name>}), since
+ * the limit applies to all the annotations of one object. Every shard carries a
+ * {@code content-manifest} annotation listing the names of all shards in order.
+ * Shard boundaries only depend on the services and the limit, so they are
+ * stable between builds.
+ * <p>Every byte written is also fed to an optional {@link MessageDigest}, so the
+ * caller can tell whether the document changed without keeping it in memory.
+ *
+ * @author yiji@apache.org
+ */
+public class ServiceDescriptorWriter implements Closeable {
+
+    private static final int INDENT = 3;
+
+    private static final int WRAP_COLUMN = 100;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Writer writer;
+
+    private final ContentEncoding encoding;
+
+    private final int contentLimit;
+
+    private ContentEncoding appliedEncoding;
+
+    private List<String> collected;
+
+    private int shards = 1;
+
+    private String name;
+
+    private int column;
+
+    private int contentLength;
+
+    private long collectedLength;
+
+    private int rawContentLength;
+
+    private int services;
+
+    private int pendingSpaces;
+
+    private boolean indention = true;
+
+    private State state = State.INITIAL;
+
+
+    /**
+     * Create a writer on the given channel storing the service list as plain JSON.
+     *
+     * @param channel the channel to write the document to, closed by {@link #close()}
+     * @param digest  the digest to update with the written bytes, or {@code null}
+     */
+    public ServiceDescriptorWriter(WritableByteChannel channel, MessageDigest digest) {
+        this(channel, digest, ContentEncoding.IDENTITY, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Create a writer on the given channel.
+     *
+     * @param channel      the channel to write the document to, closed by {@link #close()}
+     * @param digest       the digest to update with the written bytes, or {@code null}
+     * @param encoding     the encoding of the service list
+     * @param contentLimit the size of the service list, in UTF-8 bytes, above which
+     *                     {@link ContentEncoding#AUTO} compresses it
+     */
+    public ServiceDescriptorWriter(WritableByteChannel channel, MessageDigest digest,
+                                   ContentEncoding encoding, int contentLimit) {
+        this.writer = Channels.newWriter(digest != null ? new DigestChannel(channel, digest) : channel,
+                StandardCharsets.UTF_8.newEncoder(), BUFFER_SIZE);
+        this.encoding = encoding;
+        this.contentLimit = contentLimit;
+        this.appliedEncoding = (encoding == ContentEncoding.IDENTITY ? encoding : null);
+        this.collected = new ArrayList<String>();
+    }
+
+
+    /**
+     * Write the document head up to the opening of the service list.
+     *
+     * @param name the application name
+     */
+    public void writeHeader(String name) throws IOException {
+        checkState(State.INITIAL);
+        this.name = name;
+        this.state = State.CONTENT;
+    }
+
+    /**
+     * Append one service to the service list.
+     *
+     * @param attributes the service attributes, in output order
+     */
+    public void writeService(Map<String, String> attributes) throws IOException {
+        checkState(State.CONTENT);
+        String json = JSON.toJSONString(attributes, SerializerFeature.QuoteFieldNames);
+        if (this.collected != null) {
+            this.collected.add(json);
+            this.collectedLength += utf8Length(json) + 1;
+            if (this.encoding == ContentEncoding.IDENTITY && this.collectedLength + 1 > this.contentLimit) {
+                startStreaming();
+            }
+        } else {
+            if (this.services > 0) {
+                writeContent(",");
+            }
+            writeContent(json);
+        }
+        this.services++;
+    }
+
+    /**
+     * Close the service list and write the service spec.
+     *
+     * @param application the value of the {@code app} selector
+     * @param ports       the port per protocol, in output order
+     * @param headless    whether to declare a headless service ({@code clusterIP: None})
+     */
+    public void writeSpec(String application, Map<String, String> ports, boolean headless) throws IOException {
+        checkState(State.CONTENT);
+        this.state = State.SPEC;
+        if (this.collected == null) {
+            writeContent("]");
+            this.rawContentLength = this.contentLength;
+            flushSpaces();
+            write("'");
+            writeSpecBody(application, ports, headless);
+        } else {
+            writeCollected(application, ports, headless);
+        }
+        write('\n');
+        this.state = State.DONE;
+    }
+
+    /**
+     * The length in UTF-8 bytes of the service list written so far, as it
+     * appears in the {@code content} annotation once parsed. Once the spec is
+     * written this is the length of the encoded value, of the largest shard if
+     * the list was split.
+     */
+    public int getContentLength() {
+        return this.contentLength;
+    }
+
+    /**
+     * The length in UTF-8 bytes of the plain JSON service list, before encoding
+     * and splitting, available once the spec is written.
+     */
+    public int getRawContentLength() {
+        return this.rawContentLength;
+    }
+
+    /**
+     * The encoding the service list was written with, {@code null} while it
+     * is being collected for compression.
+     */
+    public ContentEncoding getContentEncoding() {
+        return this.appliedEncoding;
+    }
+
+    /**
+     * The number of Service documents written, more than one if the list was split.
+     */
+    public int getShardCount() {
+        return this.shards;
+    }
+
+    /**
+     * The number of services written so far.
+     */
+    public int getServiceCount() {
+        return this.services;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.writer.close();
+    }
+
+    /**
+     * Write the document head and the services held back, later services are
+     * written as they come.
+     */
+    private void startStreaming() throws IOException {
+        writeHead(this.name, ContentEncoding.IDENTITY, null);
+        write("'");
+        writeContent("[");
+        for (int i = 0; i < this.collected.size(); i++) {
+            writeContent(i > 0 ? "," : "");
+            writeContent(this.collected.get(i));
+        }
+        this.collected = null;
+    }
+
+    private void checkState(State expected) {
+        if (this.state != expected) {
+            throw new IllegalStateException("Expected state " + expected + " but was " + this.state);
+        }
+    }
+
+    /**
+     * Write the document head up to the value of the service list.
+     */
+    private void writeHead(String name, ContentEncoding encoding, String manifest) throws IOException {
+        writeEntry(0, "kind", "Service");
+        writeEntry(0, "apiVersion", "v1");
+        writeBlockKey(0, "metadata");
+        writeEntry(INDENT, "name", name);
+        writeBlockKey(INDENT, "annotations");
+        if (manifest != null) {
+            writeEntry(2 * INDENT, "content-manifest", manifest);
+        }
+        if (encoding.isCompressed()) {
+            writeEntry(2 * INDENT, "content-encoding", encoding.getName());
+        }
+        writeKey(2 * INDENT, "content");
+        write(" ");
+    }
+
+    private void writeSpecBody(String application, Map<String, String> ports, boolean headless) throws IOException {
+        writeBlockKey(0, "spec");
+        writeBlockKey(INDENT, "selector");
+        writeEntry(2 * INDENT, "app", application);
+        writeBlockKey(INDENT, "ports");
+        if (ports.isEmpty()) {
+            write("[]");
+        }
+        for (Map.Entry<String, String> port : ports.entrySet()) {
+            writeIndent(INDENT);
+            writeIndicator('-');
+            writeEntry(2 * INDENT, "protocol", "TCP");
+            writeEntry(2 * INDENT, "port", port.getValue());
+        }
+        if (headless) {
+            writeEntry(INDENT, "clusterIP", "None");
+        }
+    }
+
+    private void writeDocument(String name, String manifest, ContentEncoding encoding, String content,
+                               String application, Map<String, String> ports, boolean headless) throws IOException {
+        writeHead(name, encoding, manifest);
+        writeScalar(3 * INDENT, content);
+        writeSpecBody(application, ports, headless);
+    }
+
+    /**
+     * Choose the encoding of the collected service list and write it, split
+     * into several documents if it does not fit the content limit.
+     */
+    private void writeCollected(String application, Map<String, String> ports, boolean headless) throws IOException {
+        List<String> services = this.collected;
+        this.collected = null;
+
+        String json = toJson(services, 0, services.size());
+        this.rawContentLength = utf8Length(json);
+        ContentEncoding applied = this.encoding;
+        String content = json;
+        if (applied == ContentEncoding.AUTO) {
+            applied = ContentEncoding.IDENTITY;
+            if (this.rawContentLength > this.contentLimit) {
+                for (ContentEncoding candidate : ContentEncoding.values()) {
+                    if (candidate.isCompressed()) {
+                        applied = candidate;
+                        content = encode(candidate, json);
+                        if (content.length() <= this.contentLimit) {
+                            break;
+                        }
+                    }
+                }
+            }
+        } else if (applied.isCompressed()) {
+            content = encode(applied, json);
+        }
+        this.appliedEncoding = applied;
+
+        int contentLength = utf8Length(content);
+        if (contentLength <= this.contentLimit || services.size() <= 1) {
+            writeDocument(this.name, null, applied, content, application, ports, headless);
+            this.contentLength = contentLength;
+            return;
+        }
+
+        List<String> shards = split(services, applied, (double) this.rawContentLength / contentLength);
+        StringBuilder manifest = new StringBuilder();
+        for (int i = 0; i < shards.size(); i++) {
+            manifest.append(i > 0 ? "," : "").append(shardName(i));
+        }
+        for (int i = 0; i < shards.size(); i++) {
+            if (i > 0) {
+                writeIndent(0);
+                write("---");
+            }
+            writeDocument(shardName(i), manifest.toString(), applied, shards.get(i), application, ports, headless);
+        }
+        this.shards = shards.size();
+        this.contentLength = 0;
+        for (String shard : shards) {
+            this.contentLength = Math.max(this.contentLength, utf8Length(shard));
+        }
+    }
+
+    /**
+     * Greedily pack consecutive services into shards by their plain JSON size,
+     * starting from the budget the overall compression ratio suggests and
+     * shrinking it until every shard of more than one service fits once encoded.
+     */
+    private List<String> split(List<String> services, ContentEncoding encoding, double ratio) throws IOException {
+        long budget = (long) (this.contentLimit * ratio * 0.9);
+        while (true) {
+            List<String> shards = new ArrayList<String>();
+            boolean shrink = false;
+            int start = 0;
+            long size = 0;
+            for (int i = 0; i <= services.size(); i++) {
+                int length = (i < services.size() ? utf8Length(services.get(i)) + 1 : 0);
+                if (i == services.size() || (i > start && size + length > budget)) {
+                    String shard = toJson(services, start, i);
+                    shard = (encoding.isCompressed() ? encode(encoding, shard) : shard);
+                    shrink |= (utf8Length(shard) > this.contentLimit && i - start > 1);
+                    shards.add(shard);
+                    start = i;
+                    size = 0;
+                }
+                size += length;
+            }
+            if (!shrink) {
+                return shards;
+            }
+            budget = budget * 3 / 4;
+        }
+    }
+
+    private String shardName(int index) {
+        return (index == 0 ? this.name : this.name + "-" + index);
+    }
+
+    private static String encode(ContentEncoding encoding, String json) throws IOException {
+        return encoding.encode(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String toJson(List<String> services, int from, int to) {
+        StringBuilder buffer = new StringBuilder("[");
+        for (int i = from; i < to; i++) {
+            buffer.append(i > from ? "," : "").append(services.get(i));
+        }
+        return buffer.append(']').toString();
+    }
+
+    private void writeKey(int indent, String key) throws IOException {
+        writeIndent(indent);
+        write(key);
+        write(":");
+    }
+
+    /**
+     * Write the key of a nested mapping or sequence, followed by a space as yamlbeans does.
+     */
+    private void writeBlockKey(int indent, String key) throws IOException {
+        writeKey(indent, key);
+        write(" ");
+    }
+
+    private void writeEntry(int indent, String key, String value) throws IOException {
+        writeKey(indent, key);
+        write(" ");
+        writeScalar(indent + INDENT, value);
+    }
+
+    /**
+     * Move to the given column, starting a new line unless the current
+     * line holds nothing but indentation up to that column.
+     */
+    private void writeIndent(int indent) throws IOException {
+        if (!this.indention || this.column > indent) {
+            write('\n');
+        }
+        while (this.column < indent) {
+            write(' ');
+        }
+    }
+
+    private void writeIndicator(char indicator) throws IOException {
+        write(indicator);
+        this.indention = true;
+    }
+
+    /**
+     * Write part of the single quoted service list: quotes are doubled and a
+     * single space past the wrap column becomes a line break.
+     */
+    private void writeContent(String text) throws IOException {
+        this.contentLength += utf8Length(text);
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (ch == ' ') {
+                this.pendingSpaces++;
+                continue;
+            }
+            if (this.pendingSpaces == 1 && this.column > WRAP_COLUMN) {
+                this.pendingSpaces = 0;
+                write('\n');
+                writeIndent(3 * INDENT);
+            } else {
+                flushSpaces();
+            }
+            if (ch == '\'') {
+                write("''");
+            } else {
+                write(ch);
+            }
+        }
+    }
+
+    /**
+     * The number of bytes the given text takes in UTF-8, an unpaired surrogate
+     * counting as the single replacement byte the encoder writes for it.
+     */
+    static int utf8Length(String text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (ch < 0x80) {
+                length++;
+            } else if (ch < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(ch) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(ch)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private void flushSpaces() throws IOException {
+        for (; this.pendingSpaces > 0; this.pendingSpaces--) {
+            write(' ');
+        }
+    }
+
+    private void write(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            write(text.charAt(i));
+        }
+    }
+
+    private void write(char ch) throws IOException {
+        this.writer.write(ch);
+        boolean lineBreak = (ch == '\n' || ch == '\u0085');
+        this.column = (lineBreak ? 0 : this.column + 1);
+        this.indention = (lineBreak || (ch == ' ' && this.indention));
+    }
+
+    /**
+     * Write a mapping value in the style yamlbeans chooses for it, continuation
+     * lines starting at the given column.
+     */
+    private void writeScalar(int indent, String value) throws IOException {
+        switch (ScalarStyle.of(value)) {
+            case PLAIN:
+                writePlain(indent, value);
+                break;
+            case SINGLE_QUOTED:
+                writeSingleQuoted(indent, value);
+                break;
+            case LITERAL:
+                writeLiteral(indent, value);
+                break;
+            default:
+                writeDoubleQuoted(indent, value);
+        }
+    }
+
+    /**
+     * A single space past the wrap column becomes a line break.
+     */
+    private void writePlain(int indent, String text) throws IOException {
+        if (text == null) {
+            return;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (ch == ' ' && this.column > WRAP_COLUMN && (i + 1 == text.length() || text.charAt(i + 1) != ' ')
+                    && (i == 0 || text.charAt(i - 1) != ' ')) {
+                writeIndent(indent);
+                this.indention = false;
+            } else {
+                write(ch);
+            }
+        }
+    }
+
+    /**
+     * Quotes are doubled, a single space past the wrap column becomes a line break
+     * and line breaks are written twice, as a single one would read back as a space.
+     */
+    private void writeSingleQuoted(int indent, String text) throws IOException {
+        write('\'');
+        int start = 0;
+        boolean spaces = false;
+        boolean breaks = false;
+        for (int end = 0; end <= text.length(); end++) {
+            char ch = (end < text.length() ? text.charAt(end) : 0);
+            if (spaces) {
+                if (ch != ' ') {
+                    if (start + 1 == end && this.column > WRAP_COLUMN && start != 0 && end != text.length()) {
+                        writeIndent(indent);
+                    } else {
+                        write(text.substring(start, end));
+                    }
+                    start = end;
+                }
+            } else if (breaks) {
+                if (ch != '\n' && ch != '\u0085') {
+                    write(text.substring(start, end));
+                    writeIndent(indent);
+                    start = end;
+                }
+            } else if (ch != '\n' && ch != '\u0085' && start < end) {
+                write(text.substring(start, end));
+                start = end;
+            }
+            if (ch == '\'') {
+                write("''");
+                start = end + 1;
+            }
+            spaces = (ch == ' ');
+            breaks = (ch == '\n' || ch == '\u0085');
+        }
+        write('\'');
+    }
+
+    /**
+     * Characters outside printable ASCII are escaped, and past the wrap column the
+     * line is continued with an escaped line break.
+     */
+    private void writeDoubleQuoted(int indent, String text) throws IOException {
+        write('"');
+        int start = 0;
+        for (int end = 0; end <= text.length(); end++) {
+            int ch = (end < text.length() ? text.codePointAt(end) : 0);
+            if (ch == 0 || ch == '"' || ch == '\\' || ch == '\u0085' || ch < ' ' || ch > '~') {
+                if (start < end) {
+                    write(text.substring(start, end));
+                    start = end;
+                }
+                if (ch != 0) {
+                    write(escape(ch));
+                    start = end + 1;
+                }
+            }
+            if (end > 0 && end < text.length() - 1 && (ch == ' ' || start <= end)
+                    && this.column + (end - start) > WRAP_COLUMN) {
+                if (start < end) {
+                    write(text.substring(start, end));
+                    start = end;
+                }
+                write('\\');
+                writeIndent(indent);
+                this.indention = false;
+                if (text.charAt(start) == ' ') {
+                    write('\\');
+                }
+            }
+        }
+        write('"');
+    }
+
+    private static String escape(int ch) {
+        switch (ch) {
+            case 0x07:
+                return "\\a";
+            case '\b':
+                return "\\b";
+            case '\t':
+                return "\\t";
+            case '\n':
+                return "\\n";
+            case 0x0B:
+                return "\\v";
+            case '\f':
+                return "\\f";
+            case '\r':
+                return "\\r";
+            case 0x1B:
+                return "\\e";
+            case '"':
+                return "\\\"";
+            case '\\':
+                return "\\\\";
+            case 0x85:
+                return "\\N";
+            case 0xA0:
+                return "\\_";
+            default:
+                String hex = Integer.toString(ch, 16);
+                return "\\u" + "000".substring(Math.min(3, hex.length() - 1)) + hex;
+        }
+    }
+
+    /**
+     * A block scalar, kept as is on the lines below the key.
+     */
+    private void writeLiteral(int indent, String text) throws IOException {
+        char beforeLast = text.charAt(text.length() - 2);
+        write(beforeLast == '\n' || beforeLast == '\u0085' ? "|" : "|-");
+        writeIndent(indent);
+        int start = 0;
+        boolean breaks = false;
+        for (int end = 0; end <= text.length(); end++) {
+            char ch = (end < text.length() ? text.charAt(end) : 0);
+            if (breaks) {
+                if (ch != '\n' && ch != '\u0085') {
+                    write(text.substring(start, end));
+                    if (ch != 0) {
+                        writeIndent(indent);
+                    }
+                    start = end;
+                }
+            } else if (ch == 0 || ch == '\n' || ch == '\u0085') {
+                write(text.substring(start, end));
+                if (ch == 0) {
+                    write('\n');
+                }
+                start = end;
+            }
+            breaks = (ch == '\n' || ch == '\u0085');
+        }
+    }
+
+
+    private enum State {
+        INITIAL, CONTENT, SPEC, DONE
+    }
+
+    /**
+     * Feeds the bytes written to the underlying channel to a digest.
+     */
+    private static class DigestChannel implements WritableByteChannel {
+
+        private final WritableByteChannel channel;
+
+        private final MessageDigest digest;
+
+        DigestChannel(WritableByteChannel channel, MessageDigest digest) {
+            this.channel = channel;
+            this.digest = digest;
+        }
+
+        @Override
+        public int write(ByteBuffer source) throws IOException {
+            ByteBuffer written = source.duplicate();
+            int count = this.channel.write(source);
+            written.limit(written.position() + count);
+            this.digest.update(written);
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return this.channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.channel.close();
+        }
+    }
+
+}
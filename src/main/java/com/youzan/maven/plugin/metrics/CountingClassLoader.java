@@ -0,0 +1,31 @@
+package com.youzan.maven.plugin.metrics;
+
+/**
+ * Delegates every class lookup to its parent and counts it as a
+ * {@link ScanMetrics.Counter#CLASS_LOOKUPS class lookup} made by metadata reading,
+ * e.g. for annotation types and class and enum attribute values. Repeated lookups of
+ * the same class, and of classes the parent had loaded already, count as well, since
+ * whether the parent defined the class cannot be told from outside it.
+ * <p>Never defines a class itself, so lookups are not serialized by a class
+ * loading lock.
+ *
+ * @author yiji@apache.org
+ */
+public class CountingClassLoader extends ClassLoader {
+
+    private final ScanMetrics metrics;
+
+
+    public CountingClassLoader(ClassLoader parent, ScanMetrics metrics) {
+        super(parent);
+        this.metrics = metrics;
+    }
+
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        this.metrics.increment(ScanMetrics.Counter.CLASS_LOOKUPS);
+        return getParent().loadClass(name);
+    }
+
+}
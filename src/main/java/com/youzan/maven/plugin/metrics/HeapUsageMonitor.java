@@ -0,0 +1,148 @@
+package com.youzan.maven.plugin.metrics;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the highest heap occupancy of the JVM while it runs, without touching any
+ * JVM-wide state such as the peak usage of the memory pools.
+ * <p>The heap usage is sampled when asked to, e.g. at phase boundaries, and taken
+ * from the garbage collection notifications of the JVM: the usage of the heap pools
+ * right before a collection is the highest the heap got since the previous one.
+ * Where the collectors do not emit notifications, e.g. on a JVM without the
+ * {@code com.sun.management} API, only the samples are taken into account.
+ * <p>Instances are thread-safe.
+ *
+ * @author yiji@apache.org
+ */
+final class HeapUsageMonitor {
+
+    private final long usedAtStart;
+
+    private final AtomicLong maxUsed = new AtomicLong();
+
+    private final GcListener listener;
+
+
+    HeapUsageMonitor() {
+        this.usedAtStart = sample();
+        GcListener listener;
+        try {
+            listener = new GcListener(this.maxUsed);
+        } catch (LinkageError ex) {
+            listener = null;
+        }
+        this.listener = listener;
+    }
+
+
+    /**
+     * Record the current heap usage.
+     *
+     * @return the heap usage, in bytes
+     */
+    long sample() {
+        long used = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        record(this.maxUsed, used);
+        return used;
+    }
+
+    /**
+     * Stop listening to garbage collections, the usage recorded so far is kept.
+     */
+    void stop() {
+        sample();
+        if (this.listener != null) {
+            this.listener.remove();
+        }
+    }
+
+    long getUsedAtStart() {
+        return this.usedAtStart;
+    }
+
+    long getMaxUsed() {
+        return this.maxUsed.get();
+    }
+
+    private static void record(AtomicLong maxUsed, long used) {
+        long current;
+        while (used > (current = maxUsed.get())) {
+            if (maxUsed.compareAndSet(current, used)) {
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * Records the heap usage before every garbage collection, kept apart so a missing
+     * {@code com.sun.management} API only disables this part.
+     */
+    private static final class GcListener implements NotificationListener {
+
+        private final AtomicLong maxUsed;
+
+        private final Set<String> heapPools = new HashSet<String>();
+
+        private final List<NotificationEmitter> emitters = new ArrayList<NotificationEmitter>();
+
+        GcListener(AtomicLong maxUsed) {
+            this.maxUsed = maxUsed;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    this.heapPools.add(pool.getName());
+                }
+            }
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (collector instanceof NotificationEmitter) {
+                    NotificationEmitter emitter = (NotificationEmitter) collector;
+                    emitter.addNotificationListener(this, null, null);
+                    this.emitters.add(emitter);
+                }
+            }
+        }
+
+        @Override
+        public void handleNotification(Notification notification, Object handback) {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                return;
+            }
+            GarbageCollectionNotificationInfo info =
+                    GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            long used = 0;
+            for (Map.Entry<String, MemoryUsage> pool : info.getGcInfo().getMemoryUsageBeforeGc().entrySet()) {
+                if (this.heapPools.contains(pool.getKey())) {
+                    used += pool.getValue().getUsed();
+                }
+            }
+            record(this.maxUsed, used);
+        }
+
+        void remove() {
+            for (NotificationEmitter emitter : this.emitters) {
+                try {
+                    emitter.removeNotificationListener(this);
+                } catch (ListenerNotFoundException ignored) {
+                }
+            }
+        }
+    }
+
+}
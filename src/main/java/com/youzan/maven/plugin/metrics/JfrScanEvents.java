@@ -0,0 +1,152 @@
+package com.youzan.maven.plugin.metrics;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Emits the {@code com.youzan.dubbo.ServiceScanPhase} JFR event, one per phase of an
+ * execution, with the module, the phase, the counters and the step times of the phase.
+ * <p>The event type is defined at runtime through {@code jdk.jfr.EventFactory}, looked
+ * up reflectively so the plugin still runs on JDKs without the JFR API; there and
+ * when the event type cannot be defined no event is emitted. Events are only
+ * committed while a recording has the event type enabled, e.g.
+ * {@code -XX:StartFlightRecording} on {@code MAVEN_OPTS}.
+ *
+ * @author yiji@apache.org
+ */
+final class JfrScanEvents {
+
+    static final String EVENT_NAME = "com.youzan.dubbo.ServiceScanPhase";
+
+    private static final JfrScanEvents INSTANCE = create();
+
+    private final Object factory;
+
+    private final Method newEvent;
+
+    private final Method begin;
+
+    private final Method end;
+
+    private final Method shouldCommit;
+
+    private final Method commit;
+
+    private final Method set;
+
+
+    private JfrScanEvents(Object factory, Method newEvent, Method begin, Method end, Method shouldCommit,
+                          Method commit, Method set) {
+        this.factory = factory;
+        this.newEvent = newEvent;
+        this.begin = begin;
+        this.end = end;
+        this.shouldCommit = shouldCommit;
+        this.commit = commit;
+        this.set = set;
+    }
+
+
+    /**
+     * Create and begin an event.
+     *
+     * @return the event, or {@code null} if JFR is not available
+     */
+    static Object begin() {
+        if (INSTANCE == null) {
+            return null;
+        }
+        try {
+            Object event = INSTANCE.newEvent.invoke(INSTANCE.factory);
+            INSTANCE.begin.invoke(event);
+            return event;
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    /**
+     * End and commit an event obtained from {@link #begin()}.
+     */
+    static void commit(Object event, String module, String phase, long[] counters, long[] stepNanos) {
+        try {
+            INSTANCE.end.invoke(event);
+            if (!(Boolean) INSTANCE.shouldCommit.invoke(event)) {
+                return;
+            }
+            int index = 0;
+            INSTANCE.set.invoke(event, index++, module);
+            INSTANCE.set.invoke(event, index++, phase);
+            for (long counter : counters) {
+                INSTANCE.set.invoke(event, index++, counter);
+            }
+            for (long nanos : stepNanos) {
+                INSTANCE.set.invoke(event, index++, nanos);
+            }
+            INSTANCE.commit.invoke(event);
+        } catch (Exception ignored) {
+            // profiling must never fail the build
+        }
+    }
+
+    private static JfrScanEvents create() {
+        try {
+            ClassLoader classLoader = JfrScanEvents.class.getClassLoader();
+            Class<?> factoryType = Class.forName("jdk.jfr.EventFactory", false, classLoader);
+            Class<?> eventType = Class.forName("jdk.jfr.Event", false, classLoader);
+            Class<?> annotationType = Class.forName("jdk.jfr.AnnotationElement", false, classLoader);
+            Class<?> valueType = Class.forName("jdk.jfr.ValueDescriptor", false, classLoader);
+            Constructor<?> annotation = annotationType.getConstructor(Class.class, Object.class);
+            Constructor<?> value = valueType.getConstructor(Class.class, String.class, List.class);
+
+            List<Object> annotations = Arrays.asList(
+                    annotation.newInstance(Class.forName("jdk.jfr.Name", false, classLoader), EVENT_NAME),
+                    annotation.newInstance(Class.forName("jdk.jfr.Label", false, classLoader), "Dubbo Service Scan Phase"),
+                    annotation.newInstance(Class.forName("jdk.jfr.Category", false, classLoader),
+                            new String[]{"Maven", "Dubbo Service Plugin"}),
+                    annotation.newInstance(Class.forName("jdk.jfr.StackTrace", false, classLoader), Boolean.FALSE));
+
+            Object bytes = annotation.newInstance(Class.forName("jdk.jfr.DataAmount", false, classLoader), "BYTES");
+            Object nanoseconds = annotation.newInstance(Class.forName("jdk.jfr.Timespan", false, classLoader), "NANOSECONDS");
+            List<Object> fields = new ArrayList<Object>();
+            fields.add(value.newInstance(String.class, "module", Collections.emptyList()));
+            fields.add(value.newInstance(String.class, "phase", Collections.emptyList()));
+            for (ScanMetrics.Counter counter : ScanMetrics.Counter.values()) {
+                fields.add(value.newInstance(long.class, toFieldName(counter.name()),
+                        counter == ScanMetrics.Counter.BYTES_READ ? Collections.singletonList(bytes) : Collections.emptyList()));
+            }
+            for (ScanMetrics.Step step : ScanMetrics.Step.values()) {
+                fields.add(value.newInstance(long.class, step.getLabel() + "Time", Collections.singletonList(nanoseconds)));
+            }
+
+            Object factory = factoryType.getMethod("create", List.class, List.class).invoke(null, annotations, fields);
+            return new JfrScanEvents(factory, factoryType.getMethod("newEvent"),
+                    eventType.getMethod("begin"), eventType.getMethod("end"), eventType.getMethod("shouldCommit"),
+                    eventType.getMethod("commit"), eventType.getMethod("set", int.class, Object.class));
+        } catch (Throwable ex) {
+            return null;
+        }
+    }
+
+    /**
+     * {@code CLASSES_VISITED} to {@code classesVisited}.
+     */
+    private static String toFieldName(String constant) {
+        StringBuilder buffer = new StringBuilder(constant.length());
+        boolean upper = false;
+        for (char c : constant.toCharArray()) {
+            if (c == '_') {
+                upper = true;
+            } else {
+                buffer.append(upper ? c : Character.toLowerCase(c));
+                upper = false;
+            }
+        }
+        return buffer.toString();
+    }
+
+}
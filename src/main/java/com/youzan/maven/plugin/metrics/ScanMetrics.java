@@ -0,0 +1,266 @@
+package com.youzan.maven.plugin.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and timers of one plugin execution.
+ * <p>Phases are the consecutive stages of an execution and are timed by wall clock.
+ * Steps are the per-class work done within the scan phases, possibly on several
+ * threads at once; their time is summed over all threads and may exceed the time
+ * of the phase. Every phase is also committed as a {@link JfrScanEvents JFR event}
+ * carrying the counters and step times accumulated during the phase.
+ * <p>While {@link #startHeapTracking() tracking} the heap, its usage is sampled at
+ * every phase boundary and before every garbage collection. The heap is shared by
+ * the whole JVM, so in a parallel build the usage includes what other modules
+ * allocate; it tells how full the heap got during the execution, not how much
+ * memory the plugin retained.
+ * <p>Instances are thread-safe.
+ *
+ * @author yiji@apache.org
+ */
+public class ScanMetrics {
+
+    /**
+     * The consecutive stages of an execution.
+     */
+    public enum Phase {
+        CONFIGURE, CLASSES, DEPENDENCIES, EXPORT;
+
+        public String getLabel() {
+            return name().toLowerCase(Locale.ENGLISH);
+        }
+    }
+
+    /**
+     * The per-class work measured within the phases.
+     */
+    public enum Step {
+        READ, FILTER, PARSE, INTROSPECT, RESOLVE;
+
+        public String getLabel() {
+            return name().toLowerCase(Locale.ENGLISH);
+        }
+    }
+
+    public enum Counter {
+        CLASSES_VISITED("classes visited"),
+        CLASSES_PARSED("parsed"),
+        CLASSES_SKIPPED("skipped"),
+        BYTES_READ("read"),
+        SERVICES("services"),
+        CLASS_LOOKUPS("class lookups");
+
+        private final String label;
+
+        Counter(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return this.label;
+        }
+    }
+
+    private final String module;
+
+    private final AtomicLongArray phaseNanos = new AtomicLongArray(Phase.values().length);
+
+    private final AtomicLongArray stepNanos = new AtomicLongArray(Step.values().length);
+
+    private final AtomicLongArray counters = new AtomicLongArray(Counter.values().length);
+
+    private volatile HeapUsageMonitor heapMonitor;
+
+
+    /**
+     * @param module the name of the module being scanned, reported with the JFR events
+     */
+    public ScanMetrics(String module) {
+        this.module = module;
+    }
+
+
+    /**
+     * Start timing a phase, the timer must be stopped on the same thread.
+     */
+    public PhaseTimer start(Phase phase) {
+        return new PhaseTimer(phase);
+    }
+
+    /**
+     * Return the start time of a step, to be passed to {@link #end}.
+     */
+    public long begin() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Add the time elapsed since the given start to the step.
+     */
+    public void end(Step step, long start) {
+        this.stepNanos.addAndGet(step.ordinal(), System.nanoTime() - start);
+    }
+
+    public void increment(Counter counter) {
+        this.counters.incrementAndGet(counter.ordinal());
+    }
+
+    public void add(Counter counter, long delta) {
+        this.counters.addAndGet(counter.ordinal(), delta);
+    }
+
+    public long get(Counter counter) {
+        return this.counters.get(counter.ordinal());
+    }
+
+    public long getNanos(Phase phase) {
+        return this.phaseNanos.get(phase.ordinal());
+    }
+
+    public long getNanos(Step step) {
+        return this.stepNanos.get(step.ordinal());
+    }
+
+    /**
+     * Start tracking the heap usage, until {@link #stopHeapTracking()}.
+     */
+    public void startHeapTracking() {
+        if (this.heapMonitor == null) {
+            this.heapMonitor = new HeapUsageMonitor();
+        }
+    }
+
+    /**
+     * Stop tracking the heap usage, the usage tracked so far is kept.
+     */
+    public void stopHeapTracking() {
+        HeapUsageMonitor monitor = this.heapMonitor;
+        if (monitor != null) {
+            monitor.stop();
+        }
+    }
+
+    /**
+     * Return the heap usage of the JVM when tracking started, in bytes, {@code 0}
+     * if the heap was not tracked.
+     */
+    public long getHeapUsedAtStart() {
+        HeapUsageMonitor monitor = this.heapMonitor;
+        return (monitor != null ? monitor.getUsedAtStart() : 0);
+    }
+
+    /**
+     * Return the highest heap usage of the JVM observed while tracking, in bytes,
+     * {@code 0} if the heap was not tracked.
+     */
+    public long getMaxHeapUsed() {
+        HeapUsageMonitor monitor = this.heapMonitor;
+        return (monitor != null ? monitor.getMaxUsed() : 0);
+    }
+
+    /**
+     * Return a one-line summary of all counters and times, e.g.
+     * {@code 5230 classes visited, 4100 parsed, ..., 1.2 MB read, ... | configure 12 ms, classes 340 ms (read 40 ms, ...), ...}.
+     */
+    public String summary() {
+        StringBuilder buffer = new StringBuilder(256);
+        for (Counter counter : Counter.values()) {
+            if (counter.ordinal() > 0) {
+                buffer.append(", ");
+            }
+            long value = get(counter);
+            buffer.append(counter == Counter.BYTES_READ ? formatBytes(value) : String.valueOf(value))
+                    .append(' ').append(counter.getLabel());
+        }
+        buffer.append(" |");
+        for (Phase phase : Phase.values()) {
+            buffer.append(phase.ordinal() > 0 ? ", " : " ").append(phase.getLabel()).append(' ')
+                    .append(toMillis(getNanos(phase))).append(" ms");
+            if (phase == Phase.CLASSES) {
+                buffer.append(" (");
+                for (Step step : new Step[]{Step.READ, Step.FILTER, Step.PARSE, Step.INTROSPECT}) {
+                    if (step != Step.READ) {
+                        buffer.append(", ");
+                    }
+                    buffer.append(step.getLabel()).append(' ').append(toMillis(getNanos(step))).append(" ms");
+                }
+                buffer.append(')');
+            } else if (phase == Phase.EXPORT) {
+                buffer.append(" (").append(Step.RESOLVE.getLabel()).append(' ')
+                        .append(toMillis(getNanos(Step.RESOLVE))).append(" ms)");
+            }
+        }
+        return buffer.toString();
+    }
+
+    private static long toMillis(long nanos) {
+        return nanos / 1000000L;
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024 * 1024) {
+            return (bytes / 1024) + " KB";
+        }
+        return String.format(Locale.ENGLISH, "%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
+
+    /**
+     * Times one phase and commits its JFR event when stopped.
+     */
+    public final class PhaseTimer {
+
+        private final Phase phase;
+
+        private final long start;
+
+        private final long[] counterStart;
+
+        private final long[] stepStart;
+
+        private final Object event;
+
+        private PhaseTimer(Phase phase) {
+            sampleHeap();
+            this.phase = phase;
+            this.counterStart = snapshot(counters);
+            this.stepStart = snapshot(stepNanos);
+            this.event = JfrScanEvents.begin();
+            this.start = System.nanoTime();
+        }
+
+        public void stop() {
+            phaseNanos.addAndGet(this.phase.ordinal(), System.nanoTime() - this.start);
+            sampleHeap();
+            if (this.event != null) {
+                JfrScanEvents.commit(this.event, module, this.phase.getLabel(),
+                        delta(counters, this.counterStart), delta(stepNanos, this.stepStart));
+            }
+        }
+
+        private void sampleHeap() {
+            HeapUsageMonitor monitor = heapMonitor;
+            if (monitor != null) {
+                monitor.sample();
+            }
+        }
+
+        private long[] snapshot(AtomicLongArray values) {
+            long[] snapshot = new long[values.length()];
+            for (int i = 0; i < snapshot.length; i++) {
+                snapshot[i] = values.get(i);
+            }
+            return snapshot;
+        }
+
+        private long[] delta(AtomicLongArray values, long[] start) {
+            long[] delta = snapshot(values);
+            for (int i = 0; i < delta.length; i++) {
+                delta[i] -= start[i];
+            }
+            return delta;
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+package com.youzan.maven.plugin.metrics;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Machine readable summary of one plugin execution, written as JSON next to the
+ * descriptors so that CI can track scan time and descriptor size across builds:
+ * <pre class="code">
+ * {
+ *   "reportVersion": 1,
+ *   "pluginVersion": "1.0.0",
+ *   "module": "com.youzan:demo-biz",
+ *   "moduleVersion": "1.0.0-SNAPSHOT",
+ *   "classes": {"visited": 5230, "parsed": 4100, "skipped": 1100, "bytesRead": 9650000, "classLookups": 3},
+ *   "services": 12,
+ *   "phases": {"configure": 12, "classes": 340, "dependencies": 0, "export": 20, "total": 372},
+ *   "steps": {"read": 40, "filter": 6, "parse": 200, "introspect": 30, "resolve": 3},
+ *   "heap": {"usedAtStart": 52428800, "maxUsed": 94371840},
+ *   "descriptors": [{"environment": "prod", "file": "dubbo-service.yaml", "services": 13,
+ *       "rawContentLength": 4120, "contentLength": 4120, "contentEncoding": "identity",
+ *       "shards": 1, "fileSize": 4380}]
+ * }
+ * </pre>
+ * Times are in milliseconds, step times are summed over all scan threads, sizes and
+ * content lengths are in bytes. The heap usage is the one of the whole JVM, see
+ * {@link ScanMetrics}. Descriptors are listed in file name order.
+ * <p>Instances are thread-safe.
+ *
+ * @author yiji@apache.org
+ */
+public class ScanReport {
+
+    public static final int REPORT_VERSION = 1;
+
+    private final String pluginVersion;
+
+    private final String module;
+
+    private final String moduleVersion;
+
+    private final List<Map<String, Object>> descriptors = new ArrayList<Map<String, Object>>();
+
+
+    public ScanReport(String pluginVersion, String module, String moduleVersion) {
+        this.pluginVersion = pluginVersion;
+        this.module = module;
+        this.moduleVersion = moduleVersion;
+    }
+
+
+    /**
+     * Add a generated descriptor.
+     *
+     * @param environment      the environment the descriptor was resolved for
+     * @param fileName         the descriptor file name
+     * @param services         the number of services written
+     * @param rawContentLength the length of the plain service list, in UTF-8 bytes
+     * @param contentLength    the length of the stored service list, of the largest shard if split, in UTF-8 bytes
+     * @param contentEncoding  the encoding of the stored service list
+     * @param shards           the number of Service documents
+     * @param fileSize         the size of the descriptor file
+     */
+    public synchronized void addDescriptor(String environment, String fileName, int services, int rawContentLength,
+                                           int contentLength, String contentEncoding, int shards, long fileSize) {
+        Map<String, Object> descriptor = new LinkedHashMap<String, Object>();
+        descriptor.put("environment", environment);
+        descriptor.put("file", fileName);
+        descriptor.put("services", services);
+        descriptor.put("rawContentLength", rawContentLength);
+        descriptor.put("contentLength", contentLength);
+        descriptor.put("contentEncoding", contentEncoding);
+        descriptor.put("shards", shards);
+        descriptor.put("fileSize", fileSize);
+        this.descriptors.add(descriptor);
+    }
+
+    public synchronized String toJson(ScanMetrics metrics) {
+        Map<String, Object> report = new LinkedHashMap<String, Object>();
+        report.put("reportVersion", REPORT_VERSION);
+        report.put("pluginVersion", this.pluginVersion);
+        report.put("module", this.module);
+        report.put("moduleVersion", this.moduleVersion);
+
+        Map<String, Object> classes = new LinkedHashMap<String, Object>();
+        classes.put("visited", metrics.get(ScanMetrics.Counter.CLASSES_VISITED));
+        classes.put("parsed", metrics.get(ScanMetrics.Counter.CLASSES_PARSED));
+        classes.put("skipped", metrics.get(ScanMetrics.Counter.CLASSES_SKIPPED));
+        classes.put("bytesRead", metrics.get(ScanMetrics.Counter.BYTES_READ));
+        classes.put("classLookups", metrics.get(ScanMetrics.Counter.CLASS_LOOKUPS));
+        report.put("classes", classes);
+        report.put("services", metrics.get(ScanMetrics.Counter.SERVICES));
+
+        Map<String, Object> phases = new LinkedHashMap<String, Object>();
+        long total = 0;
+        for (ScanMetrics.Phase phase : ScanMetrics.Phase.values()) {
+            long millis = metrics.getNanos(phase) / 1000000L;
+            phases.put(phase.getLabel(), millis);
+            total += millis;
+        }
+        phases.put("total", total);
+        report.put("phases", phases);
+
+        Map<String, Object> steps = new LinkedHashMap<String, Object>();
+        for (ScanMetrics.Step step : ScanMetrics.Step.values()) {
+            steps.put(step.getLabel(), metrics.getNanos(step) / 1000000L);
+        }
+        report.put("steps", steps);
+        Map<String, Object> heap = new LinkedHashMap<String, Object>();
+        heap.put("usedAtStart", metrics.getHeapUsedAtStart());
+        heap.put("maxUsed", metrics.getMaxHeapUsed());
+        report.put("heap", heap);
+
+        List<Map<String, Object>> descriptors = new ArrayList<Map<String, Object>>(this.descriptors);
+        Collections.sort(descriptors, new Comparator<Map<String, Object>>() {
+            @Override
+            public int compare(Map<String, Object> a, Map<String, Object> b) {
+                return String.valueOf(a.get("file")).compareTo(String.valueOf(b.get("file")));
+            }
+        });
+        report.put("descriptors", descriptors);
+        return JSON.toJSONString(report, SerializerFeature.PrettyFormat);
+    }
+
+    public void write(File file, ScanMetrics metrics) throws IOException {
+        Files.write(file.toPath(), toJson(metrics).getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,255 @@
+package com.youzan.maven.plugin.placeholder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Resolves {@code ${...}} placeholders in annotation attribute values.
+ * <p>Supported forms:
+ * <ul>
+ * <li>{@code ${key}} - the property value</li>
+ * <li>{@code ${key:default}} - the default when the property is not set, may be empty</li>
+ * <li>{@code tether-${env}} - placeholders embedded in literal text, any number of them</li>
+ * <li>{@code ${dubbo.${env}.group:${dubbo.group}}} - placeholders nested in keys and defaults</li>
+ * </ul>
+ * Property values may contain placeholders themselves and are resolved recursively,
+ * a circular reference is an error.
+ * <p>Every distinct value is compiled once into literal and placeholder segments, and
+ * every key is looked up and resolved once; both are memoized for the lifetime of the
+ * resolver, which should therefore not outlive the properties it reads.
+ * <p>Instances are thread-safe.
+ *
+ * @author yiji@apache.org
+ */
+public class PlaceholderResolver {
+
+    private static final String PREFIX = "${";
+
+    private static final String SUFFIX = "}";
+
+    private static final char SEPARATOR = ':';
+
+    /**
+     * Marks keys that have no value, since the memo cannot hold {@code null}.
+     */
+    private static final String MISSING = new String("<missing>");
+
+    private final PropertyLookup lookup;
+
+    private final ConcurrentMap<String, Segment[]> compiled = new ConcurrentHashMap<String, Segment[]>(64);
+
+    private final ConcurrentMap<String, String> resolved = new ConcurrentHashMap<String, String>(64);
+
+    private final Set<String> unresolvedKeys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+
+    public PlaceholderResolver(PropertyLookup lookup) {
+        this.lookup = lookup;
+    }
+
+
+    /**
+     * Resolve all placeholders in the given value.
+     *
+     * @return the resolved value, the value itself if it holds no placeholder, or
+     * {@code null} if a placeholder has neither a property value nor a default
+     * @throws IllegalArgumentException on a circular placeholder reference
+     */
+    public String resolve(String value) {
+        if (value == null || value.indexOf(PREFIX) < 0) {
+            return value;
+        }
+        return resolve(compile(value), new HashSet<String>(4));
+    }
+
+    /**
+     * Return the resolved value of a property, {@code null} if it is not set.
+     *
+     * @throws IllegalArgumentException on a circular placeholder reference
+     */
+    public String getProperty(String key) {
+        return resolveKey(key, new HashSet<String>(4));
+    }
+
+    /**
+     * Return the keys of the placeholders resolved so far that had neither
+     * a value nor a default.
+     */
+    public Set<String> getUnresolvedKeys() {
+        return Collections.unmodifiableSet(this.unresolvedKeys);
+    }
+
+    private String resolve(Segment[] segments, Set<String> visiting) {
+        if (segments.length == 1) {
+            return segments[0].resolve(this, visiting);
+        }
+        StringBuilder buffer = new StringBuilder();
+        for (Segment segment : segments) {
+            String value = segment.resolve(this, visiting);
+            if (value == null) {
+                return null;
+            }
+            buffer.append(value);
+        }
+        return buffer.toString();
+    }
+
+    private String resolveKey(String key, Set<String> visiting) {
+        String value = this.resolved.get(key);
+        if (value == null) {
+            if (!visiting.add(key)) {
+                throw new IllegalArgumentException("Circular placeholder reference '" + key + "'");
+            }
+            try {
+                String raw = this.lookup.getProperty(key);
+                if (raw == null) {
+                    value = MISSING;
+                } else if (raw.indexOf(PREFIX) < 0) {
+                    value = raw;
+                } else {
+                    value = resolve(compile(raw), visiting);
+                    value = (value != null ? value : MISSING);
+                }
+            } finally {
+                visiting.remove(key);
+            }
+            this.resolved.putIfAbsent(key, value);
+        }
+        return (value == MISSING ? null : value);
+    }
+
+    private Segment[] compile(String value) {
+        Segment[] segments = this.compiled.get(value);
+        if (segments == null) {
+            segments = parse(value, 0, value.length());
+            this.compiled.putIfAbsent(value, segments);
+        }
+        return segments;
+    }
+
+    /**
+     * Split {@code value[from, to)} into literal and placeholder segments. An
+     * unterminated placeholder is kept as literal text.
+     */
+    private static Segment[] parse(String value, int from, int to) {
+        List<Segment> segments = new ArrayList<Segment>(4);
+        int literalStart = from;
+        int index = value.indexOf(PREFIX, from);
+        while (index >= 0 && index < to) {
+            int end = findPlaceholderEnd(value, index + PREFIX.length(), to);
+            if (end < 0) {
+                break;
+            }
+            if (index > literalStart) {
+                segments.add(new Literal(value.substring(literalStart, index)));
+            }
+
+            int keyStart = index + PREFIX.length();
+            int separator = findSeparator(value, keyStart, end);
+            if (separator < 0) {
+                segments.add(new Placeholder(parse(value, keyStart, end), null));
+            } else {
+                segments.add(new Placeholder(parse(value, keyStart, separator), parse(value, separator + 1, end)));
+            }
+
+            literalStart = end + SUFFIX.length();
+            index = value.indexOf(PREFIX, literalStart);
+        }
+        if (literalStart < to || segments.isEmpty()) {
+            segments.add(new Literal(value.substring(literalStart, to)));
+        }
+        return segments.toArray(new Segment[segments.size()]);
+    }
+
+    private static int findPlaceholderEnd(String value, int from, int to) {
+        int depth = 0;
+        for (int i = from; i < to; i++) {
+            if (value.startsWith(PREFIX, i)) {
+                depth++;
+                i += PREFIX.length() - 1;
+            } else if (value.startsWith(SUFFIX, i)) {
+                if (depth == 0) {
+                    return i;
+                }
+                depth--;
+            }
+        }
+        return -1;
+    }
+
+    private static int findSeparator(String value, int from, int to) {
+        int depth = 0;
+        for (int i = from; i < to; i++) {
+            if (value.startsWith(PREFIX, i)) {
+                depth++;
+                i += PREFIX.length() - 1;
+            } else if (value.startsWith(SUFFIX, i)) {
+                depth--;
+            } else if (value.charAt(i) == SEPARATOR && depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * Source of the raw property values.
+     */
+    public interface PropertyLookup {
+
+        /**
+         * Return the raw value of the property, {@code null} if it is not set.
+         */
+        String getProperty(String key);
+    }
+
+    private interface Segment {
+
+        String resolve(PlaceholderResolver resolver, Set<String> visiting);
+    }
+
+    private static final class Literal implements Segment {
+
+        private final String text;
+
+        Literal(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public String resolve(PlaceholderResolver resolver, Set<String> visiting) {
+            return this.text;
+        }
+    }
+
+    private static final class Placeholder implements Segment {
+
+        private final Segment[] key;
+
+        private final Segment[] defaultValue;
+
+        Placeholder(Segment[] key, Segment[] defaultValue) {
+            this.key = key;
+            this.defaultValue = defaultValue;
+        }
+
+        @Override
+        public String resolve(PlaceholderResolver resolver, Set<String> visiting) {
+            String key = resolver.resolve(this.key, visiting);
+            String value = (key != null ? resolver.resolveKey(key, visiting) : null);
+            if (value == null && this.defaultValue != null) {
+                value = resolver.resolve(this.defaultValue, visiting);
+            } else if (value == null && key != null) {
+                resolver.unresolvedKeys.add(key);
+            }
+            return value;
+        }
+    }
+
+}
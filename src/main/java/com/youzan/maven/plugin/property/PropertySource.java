@@ -0,0 +1,115 @@
+package com.youzan.maven.plugin.property;
+
+import com.esotericsoftware.yamlbeans.YamlReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * A named, immutable set of properties, e.g. the content of one configuration file.
+ * <p>YAML files are flattened the way Spring Boot does: nested keys are joined
+ * with {@code .}, list elements are addressed as {@code key[index]}, and later
+ * documents of a multi-document file override earlier ones.
+ *
+ * @author yiji@apache.org
+ */
+public final class PropertySource {
+
+    private final String name;
+
+    private final Map<String, String> properties;
+
+
+    public PropertySource(String name, Map<String, String> properties) {
+        this.name = name;
+        this.properties = Collections.unmodifiableMap(new LinkedHashMap<String, String>(properties));
+    }
+
+
+    /**
+     * Create a source from a snapshot of the given properties, defaults included.
+     */
+    public static PropertySource of(String name, Properties properties) {
+        Map<String, String> values = new LinkedHashMap<String, String>();
+        if (properties != null) {
+            for (String key : properties.stringPropertyNames()) {
+                values.put(key, properties.getProperty(key));
+            }
+        }
+        return new PropertySource(name, values);
+    }
+
+    /**
+     * Load a {@code .properties}, {@code .yml} or {@code .yaml} file.
+     */
+    public static PropertySource load(File file) throws IOException {
+        String fileName = file.getName();
+        if (!fileName.endsWith(".yml") && !fileName.endsWith(".yaml")) {
+            Properties properties = new Properties();
+            Reader reader = Files.newBufferedReader(file.toPath());
+            try {
+                properties.load(reader);
+            } finally {
+                reader.close();
+            }
+            return of(fileName, properties);
+        }
+
+        Map<String, String> values = new LinkedHashMap<String, String>();
+        YamlReader reader = new YamlReader(Files.newBufferedReader(file.toPath()));
+        try {
+            Object document;
+            while ((document = reader.read()) != null) {
+                flatten(null, document, values);
+            }
+        } finally {
+            reader.close();
+        }
+        return new PropertySource(fileName, values);
+    }
+
+
+    public String getName() {
+        return this.name;
+    }
+
+    public String getProperty(String key) {
+        return this.properties.get(key);
+    }
+
+    /**
+     * Return all properties of this source, in load order.
+     */
+    public Map<String, String> getProperties() {
+        return this.properties;
+    }
+
+    private static void flatten(String prefix, Object value, Map<String, String> values) {
+        if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                String key = String.valueOf(entry.getKey());
+                flatten(prefix != null ? prefix + "." + key : key, entry.getValue(), values);
+            }
+        } else if (value instanceof List) {
+            List<?> elements = (List<?>) value;
+            for (int i = 0; i < elements.size(); i++) {
+                flatten((prefix != null ? prefix : "") + "[" + i + "]", elements.get(i), values);
+            }
+        } else if (prefix != null) {
+            values.put(prefix, value != null ? value.toString() : "");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.name;
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.youzan.maven.plugin.property;
+
+import com.youzan.maven.plugin.placeholder.PlaceholderResolver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An ordered chain of {@link PropertySource property sources} merged into a
+ * single immutable lookup table.
+ * <p>Sources are given in precedence order, the first source that defines a key
+ * wins. The merge happens once on construction, so a lookup is a single hash
+ * lookup no matter how many sources the chain has.
+ *
+ * @author yiji@apache.org
+ */
+public final class PropertySources implements PlaceholderResolver.PropertyLookup {
+
+    private final List<PropertySource> sources;
+
+    private final Map<String, String> properties;
+
+
+    /**
+     * @param sources the sources, highest precedence first
+     */
+    public PropertySources(List<PropertySource> sources) {
+        this.sources = Collections.unmodifiableList(new ArrayList<PropertySource>(sources));
+        Map<String, String> merged = new HashMap<String, String>(256);
+        for (int i = sources.size() - 1; i >= 0; i--) {
+            merged.putAll(sources.get(i).getProperties());
+        }
+        this.properties = Collections.unmodifiableMap(merged);
+    }
+
+
+    @Override
+    public String getProperty(String key) {
+        return this.properties.get(key);
+    }
+
+    /**
+     * Return the sources, highest precedence first.
+     */
+    public List<PropertySource> getSources() {
+        return this.sources;
+    }
+
+    public int size() {
+        return this.properties.size();
+    }
+
+    @Override
+    public String toString() {
+        return this.sources.toString();
+    }
+
+}
@@ -0,0 +1,470 @@
+package com.youzan.maven.plugin.scan;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cheap pre-filter that inspects the constant pool of a class file for the
+ * descriptors of the given annotation types, e.g.
+ * {@code Lcom/youzan/api/rpc/annotation/Service;}, without running a full ASM parse.
+ * <p>A class annotated with one of the types always references its descriptor
+ * from the constant pool. A class that only carries a composed annotation, one
+ * meta-annotated with one of the types, does not; with a {@link MetaAnnotationResolver}
+ * the filter then walks the class file to its class-level annotations and keeps the
+ * class if one of them is meta-annotated with one of the types, or cannot be resolved
+ * and is left to the full parse. Each annotation type is resolved once per filter.
+ * Without a resolver a miss in the constant pool means the class can be skipped.
+ *
+ * @author yiji@apache.org
+ */
+public class AnnotationDescriptorFilter {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    private static final int ACC_ANNOTATION = 0x2000;
+
+    private static final byte[] RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] RUNTIME_INVISIBLE_ANNOTATIONS = "RuntimeInvisibleAnnotations".getBytes(StandardCharsets.UTF_8);
+
+    private final byte[][] descriptors;
+
+    private final Set<String> annotationNames;
+
+    private final MetaAnnotationResolver resolver;
+
+    private final ConcurrentMap<String, Boolean> composedTypes = new ConcurrentHashMap<String, Boolean>(64);
+
+    private final Set<String> unresolvedTypes = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+
+    /**
+     * Create a new {@code AnnotationDescriptorFilter}.
+     *
+     * @param annotationNames the fully qualified class names of the annotation types to look for
+     */
+    public AnnotationDescriptorFilter(String... annotationNames) {
+        this(annotationNames, null);
+    }
+
+    /**
+     * Create a new {@code AnnotationDescriptorFilter} that also keeps classes carrying
+     * composed annotations.
+     *
+     * @param annotationNames the fully qualified class names of the annotation types to look for
+     * @param resolver        the meta-annotations of the annotation types found on a class,
+     *                        or {@code null} to only look for the types themselves
+     */
+    public AnnotationDescriptorFilter(String[] annotationNames, MetaAnnotationResolver resolver) {
+        this.descriptors = new byte[annotationNames.length][];
+        for (int i = 0; i < annotationNames.length; i++) {
+            this.descriptors[i] = ("L" + annotationNames[i].replace('.', '/') + ";").getBytes(StandardCharsets.UTF_8);
+        }
+        this.annotationNames = new HashSet<String>(Arrays.asList(annotationNames));
+        this.resolver = resolver;
+    }
+
+
+    /**
+     * Determine whether the given class file may carry one of the annotation types.
+     * <p>Returns {@code true} for content that cannot be interpreted as a class file,
+     * leaving the error reporting to the ASM parser.
+     *
+     * @param bytes  the class file content
+     * @param offset the start of the class file in {@code bytes}
+     * @param length the length of the class file
+     * @return {@code false} if none of the annotation descriptors is present, nor,
+     * with a resolver, a composed annotation
+     */
+    public boolean matches(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+        if (length < 10 || readInt(bytes, offset) != MAGIC) {
+            return true;
+        }
+        int count = readUnsignedShort(bytes, offset + 8);
+        int index = offset + 10;
+        // constant pool offsets of the UTF8 entries, to read annotation types by index
+        int[] utf8 = (this.resolver != null ? new int[count] : null);
+        for (int i = 1; i < count; i++) {
+            if (index >= end) {
+                return true;
+            }
+            int tag = bytes[index];
+            switch (tag) {
+                case CONSTANT_UTF8:
+                    if (index + 3 > end) {
+                        return true;
+                    }
+                    int size = readUnsignedShort(bytes, index + 1);
+                    if (isDescriptor(bytes, index + 3, size, end)) {
+                        return true;
+                    }
+                    if (utf8 != null) {
+                        utf8[i] = index;
+                    }
+                    index += 3 + size;
+                    break;
+                default:
+                    int skip = constantSize(tag);
+                    if (skip < 0) {
+                        // Unknown constant pool tag, let ASM deal with it.
+                        return true;
+                    }
+                    index += skip;
+                    if (tag == CONSTANT_LONG || tag == CONSTANT_DOUBLE) {
+                        // 8-byte constants take up two entries.
+                        i++;
+                    }
+            }
+        }
+        return (this.resolver != null && hasComposedAnnotation(bytes, index, end, utf8));
+    }
+
+    public boolean matches(byte[] bytes) {
+        return matches(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Determine whether the given class file declares an annotation type, by its access flags.
+     * <p>Returns {@code false} for content that cannot be interpreted as a class file.
+     *
+     * @param bytes  the class file content
+     * @param offset the start of the class file in {@code bytes}
+     * @param length the length of the class file
+     */
+    public static boolean isAnnotationType(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+        if (length < 10 || readInt(bytes, offset) != MAGIC) {
+            return false;
+        }
+        int count = readUnsignedShort(bytes, offset + 8);
+        int index = offset + 10;
+        for (int i = 1; i < count; i++) {
+            if (index >= end) {
+                return false;
+            }
+            int tag = bytes[index];
+            if (tag == CONSTANT_UTF8) {
+                if (index + 3 > end) {
+                    return false;
+                }
+                index += 3 + readUnsignedShort(bytes, index + 1);
+                continue;
+            }
+            int skip = constantSize(tag);
+            if (skip < 0) {
+                return false;
+            }
+            index += skip;
+            if (tag == CONSTANT_LONG || tag == CONSTANT_DOUBLE) {
+                i++;
+            }
+        }
+        return (index + 2 <= end && (readUnsignedShort(bytes, index) & ACC_ANNOTATION) != 0);
+    }
+
+    /**
+     * Return the annotation types that could not be resolved, whose classes were kept.
+     */
+    public Set<String> getUnresolvedTypes() {
+        return Collections.unmodifiableSet(this.unresolvedTypes);
+    }
+
+    /**
+     * Walk the class file from the end of the constant pool to the class attributes and
+     * look at the annotations declared on the class. Malformed content counts as a match.
+     */
+    private boolean hasComposedAnnotation(byte[] bytes, int index, int end, int[] utf8) {
+        // access flags, this class and super class
+        index += 6;
+        if (index + 2 > end) {
+            return true;
+        }
+        index += 2 + 2 * readUnsignedShort(bytes, index);
+        // fields, then methods
+        for (int member = 0; member < 2; member++) {
+            if (index + 2 > end) {
+                return true;
+            }
+            int count = readUnsignedShort(bytes, index);
+            index += 2;
+            for (int i = 0; i < count; i++) {
+                index = skipAttributes(bytes, index + 6, end);
+                if (index < 0) {
+                    return true;
+                }
+            }
+        }
+        if (index + 2 > end) {
+            return true;
+        }
+        int attributes = readUnsignedShort(bytes, index);
+        index += 2;
+        for (int i = 0; i < attributes; i++) {
+            if (index + 6 > end) {
+                return true;
+            }
+            int name = readUnsignedShort(bytes, index);
+            int length = readInt(bytes, index + 2);
+            index += 6;
+            if (length < 0 || index + length > end) {
+                return true;
+            }
+            if ((isUtf8(bytes, utf8, name, RUNTIME_VISIBLE_ANNOTATIONS) || isUtf8(bytes, utf8, name, RUNTIME_INVISIBLE_ANNOTATIONS))
+                    && containsComposedAnnotation(bytes, index, index + length, utf8)) {
+                return true;
+            }
+            index += length;
+        }
+        return false;
+    }
+
+    /**
+     * Whether one of the annotations of an annotations attribute is composed.
+     */
+    private boolean containsComposedAnnotation(byte[] bytes, int index, int end, int[] utf8) {
+        if (index + 2 > end) {
+            return true;
+        }
+        int count = readUnsignedShort(bytes, index);
+        index += 2;
+        for (int i = 0; i < count; i++) {
+            if (index + 2 > end) {
+                return true;
+            }
+            String type = toClassName(bytes, utf8, readUnsignedShort(bytes, index));
+            if (type == null || isComposed(type)) {
+                return true;
+            }
+            index = skipAnnotation(bytes, index, end);
+            if (index < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isComposed(String type) {
+        Boolean composed = this.composedTypes.get(type);
+        if (composed == null) {
+            Set<String> metaAnnotationTypes = this.resolver.getMetaAnnotationTypes(type);
+            if (metaAnnotationTypes == null) {
+                this.unresolvedTypes.add(type);
+                composed = Boolean.TRUE;
+            } else {
+                composed = Boolean.FALSE;
+                for (String metaAnnotationType : metaAnnotationTypes) {
+                    if (this.annotationNames.contains(metaAnnotationType)) {
+                        composed = Boolean.TRUE;
+                        break;
+                    }
+                }
+            }
+            this.composedTypes.putIfAbsent(type, composed);
+        }
+        return composed;
+    }
+
+    /**
+     * The size of a constant pool entry other than UTF8, or {@code -1} for an unknown tag.
+     */
+    private static int constantSize(int tag) {
+        switch (tag) {
+            case CONSTANT_LONG:
+            case CONSTANT_DOUBLE:
+                return 9;
+            case CONSTANT_INTEGER:
+            case CONSTANT_FLOAT:
+            case CONSTANT_FIELDREF:
+            case CONSTANT_METHODREF:
+            case CONSTANT_INTERFACE_METHODREF:
+            case CONSTANT_NAME_AND_TYPE:
+            case CONSTANT_DYNAMIC:
+            case CONSTANT_INVOKE_DYNAMIC:
+                return 5;
+            case CONSTANT_METHOD_HANDLE:
+                return 4;
+            case CONSTANT_CLASS:
+            case CONSTANT_STRING:
+            case CONSTANT_METHOD_TYPE:
+            case CONSTANT_MODULE:
+            case CONSTANT_PACKAGE:
+                return 3;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Skip the attributes of a field or method.
+     *
+     * @return the index after the attributes, or {@code -1} if the content is malformed
+     */
+    private static int skipAttributes(byte[] bytes, int index, int end) {
+        if (index + 2 > end) {
+            return -1;
+        }
+        int count = readUnsignedShort(bytes, index);
+        index += 2;
+        for (int i = 0; i < count; i++) {
+            if (index + 6 > end) {
+                return -1;
+            }
+            int length = readInt(bytes, index + 2);
+            if (length < 0) {
+                return -1;
+            }
+            index += 6 + length;
+        }
+        return (index <= end ? index : -1);
+    }
+
+    /**
+     * @return the index after the annotation, or {@code -1} if the content is malformed
+     */
+    private static int skipAnnotation(byte[] bytes, int index, int end) {
+        if (index + 4 > end) {
+            return -1;
+        }
+        int pairs = readUnsignedShort(bytes, index + 2);
+        index += 4;
+        for (int i = 0; i < pairs && index >= 0; i++) {
+            index = skipElementValue(bytes, index + 2, end);
+        }
+        return index;
+    }
+
+    private static int skipElementValue(byte[] bytes, int index, int end) {
+        if (index + 1 > end) {
+            return -1;
+        }
+        switch (bytes[index]) {
+            case 'B':
+            case 'C':
+            case 'D':
+            case 'F':
+            case 'I':
+            case 'J':
+            case 'S':
+            case 'Z':
+            case 's':
+            case 'c':
+                index += 3;
+                break;
+            case 'e':
+                index += 5;
+                break;
+            case '@':
+                return skipAnnotation(bytes, index + 1, end);
+            case '[':
+                if (index + 3 > end) {
+                    return -1;
+                }
+                int count = readUnsignedShort(bytes, index + 1);
+                index += 3;
+                for (int i = 0; i < count && index >= 0; i++) {
+                    index = skipElementValue(bytes, index, end);
+                }
+                return index;
+            default:
+                return -1;
+        }
+        return (index <= end ? index : -1);
+    }
+
+    private static boolean isUtf8(byte[] bytes, int[] utf8, int entry, byte[] value) {
+        if (entry <= 0 || entry >= utf8.length || utf8[entry] == 0) {
+            return false;
+        }
+        int offset = utf8[entry];
+        return readUnsignedShort(bytes, offset + 1) == value.length && regionMatches(bytes, offset + 3, value);
+    }
+
+    /**
+     * The class name of the type descriptor in the given constant pool entry, e.g.
+     * {@code a.b.C} for {@code La/b/C;}, or {@code null} if the entry is no descriptor.
+     */
+    private static String toClassName(byte[] bytes, int[] utf8, int entry) {
+        if (entry <= 0 || entry >= utf8.length || utf8[entry] == 0) {
+            return null;
+        }
+        int offset = utf8[entry];
+        int size = readUnsignedShort(bytes, offset + 1);
+        if (size < 3 || bytes[offset + 3] != 'L' || bytes[offset + 2 + size] != ';') {
+            return null;
+        }
+        return new String(bytes, offset + 4, size - 2, StandardCharsets.UTF_8).replace('/', '.');
+    }
+
+    /**
+     * Whether the UTF8 entry at the given offset is one of the descriptors, never reading
+     * past {@code end}: the array may be a reused buffer holding stale bytes beyond it.
+     */
+    private boolean isDescriptor(byte[] bytes, int offset, int size, int end) {
+        if (offset + size > end) {
+            return false;
+        }
+        for (byte[] descriptor : this.descriptors) {
+            if (descriptor.length == size && regionMatches(bytes, offset, descriptor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean regionMatches(byte[] bytes, int offset, byte[] descriptor) {
+        // compare back to front, descriptors share their package prefix
+        for (int i = descriptor.length - 1; i >= 0; i--) {
+            if (bytes[offset + i] != descriptor[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int readUnsignedShort(byte[] bytes, int index) {
+        return ((bytes[index] & 0xFF) << 8) | (bytes[index + 1] & 0xFF);
+    }
+
+    private static int readInt(byte[] bytes, int index) {
+        return ((bytes[index] & 0xFF) << 24) | ((bytes[index + 1] & 0xFF) << 16)
+                | ((bytes[index + 2] & 0xFF) << 8) | (bytes[index + 3] & 0xFF);
+    }
+
+
+    /**
+     * Looks up the meta-annotations of the annotation types found on a class.
+     */
+    public interface MetaAnnotationResolver {
+
+        /**
+         * Return the names of all meta-annotation types of the given annotation type,
+         * transitively, or {@code null} if the annotation type cannot be found.
+         */
+        Set<String> getMetaAnnotationTypes(String annotationName);
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.youzan.maven.plugin.scan;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Callback invoked by {@link ClassFileScanner} for every class file found.
+ * <p>Implementations may be called concurrently from several scanner threads
+ * and must therefore not share mutable state without synchronization.
+ *
+ * @author yiji@apache.org
+ */
+public interface ClassFileHandler<T> {
+
+    /**
+     * Process a single class file.
+     *
+     * @param file      the class file
+     * @param className the class name derived from the path of the file
+     *                  relative to the scanned directory
+     * @return the result for this file, or {@code null} if the file should be ignored
+     * @throws IOException if the class file could not be read
+     */
+    T handle(File file, String className) throws IOException;
+
+}
@@ -0,0 +1,190 @@
+package com.youzan.maven.plugin.scan;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Walks a class directory and hands every {@code .class} file to a {@link ClassFileHandler},
+ * either on the calling thread or on a bounded pool of worker threads.
+ * <p>When package names are given, sub-directories that cannot contain a class of one of
+ * those packages are never entered, and class files are matched by the class name
+ * derived from their path before they are read.
+ * <p>Directory entries are visited in sorted order and results are merged in that
+ * same order, so the outcome does not depend on the number of threads or on the
+ * ordering of the underlying file system.
+ *
+ * @author yiji@apache.org
+ */
+public class ClassFileScanner {
+
+    private static final String CLASS_FILE_SUFFIX = ".class";
+
+    /**
+     * Number of class files handed to a worker in one task, keeps the
+     * per-task overhead small compared to parsing.
+     */
+    private static final int BATCH_SIZE = 256;
+
+    private final int threads;
+
+    private final PackageFilter packageFilter;
+
+
+    /**
+     * Create a new {@code ClassFileScanner} visiting all class files.
+     *
+     * @param threads the number of worker threads, {@code 0} or less to use
+     *                one thread per available processor
+     */
+    public ClassFileScanner(int threads) {
+        this(threads, null);
+    }
+
+    /**
+     * Create a new {@code ClassFileScanner} restricted to the given packages.
+     *
+     * @param threads  the number of worker threads, {@code 0} or less to use
+     *                 one thread per available processor
+     * @param packages the class name prefixes to scan, e.g. {@code com.youzan},
+     *                 {@code null} or empty to scan all classes
+     */
+    public ClassFileScanner(int threads, String[] packages) {
+        this.threads = (threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+        this.packageFilter = new PackageFilter(packages);
+    }
+
+
+    public int getThreads() {
+        return this.threads;
+    }
+
+    /**
+     * Scan the given directory recursively.
+     *
+     * @param directory the root of the class directory
+     * @param handler   the handler to invoke for every class file
+     * @return the non-null handler results, in class file order
+     * @throws IOException if a class file could not be read
+     */
+    public <T> List<T> scan(File directory, ClassFileHandler<T> handler) throws IOException {
+        List<ClassFile> files = new ArrayList<ClassFile>();
+        collectClassFiles(directory, "", files);
+
+        if (this.threads <= 1 || files.size() <= BATCH_SIZE) {
+            return handle(files, handler);
+        }
+        return handleConcurrently(files, handler);
+    }
+
+    private void collectClassFiles(File directory, String path, List<ClassFile> files) {
+        File[] children = directory.listFiles();
+        if (children == null) {
+            return;
+        }
+        Arrays.sort(children);
+        for (File file : children) {
+            String childPath = path + file.getName();
+            if (file.isDirectory()) {
+                if (this.packageFilter.mayContain(childPath)) {
+                    collectClassFiles(file, childPath + "/", files);
+                }
+            } else if (childPath.endsWith(CLASS_FILE_SUFFIX) && this.packageFilter.includes(childPath) && file.isFile()) {
+                files.add(new ClassFile(file, PackageFilter.toClassName(childPath)));
+            }
+        }
+    }
+
+    private <T> List<T> handle(List<ClassFile> files, ClassFileHandler<T> handler) throws IOException {
+        List<T> results = new ArrayList<T>();
+        for (ClassFile classFile : files) {
+            T result = handler.handle(classFile.file, classFile.className);
+            if (result != null) {
+                results.add(result);
+            }
+        }
+        return results;
+    }
+
+    private <T> List<T> handleConcurrently(List<ClassFile> files, final ClassFileHandler<T> handler) throws IOException {
+        int batches = (files.size() + BATCH_SIZE - 1) / BATCH_SIZE;
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(this.threads, batches), new ScannerThreadFactory());
+        try {
+            List<Future<List<T>>> futures = new ArrayList<Future<List<T>>>(batches);
+            for (int start = 0; start < files.size(); start += BATCH_SIZE) {
+                final List<ClassFile> batch = files.subList(start, Math.min(start + BATCH_SIZE, files.size()));
+                futures.add(executor.submit(new Callable<List<T>>() {
+                    @Override
+                    public List<T> call() throws IOException {
+                        return handle(batch, handler);
+                    }
+                }));
+            }
+
+            List<T> results = new ArrayList<T>();
+            for (Future<List<T>> future : futures) {
+                results.addAll(await(future));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private <T> List<T> await(Future<List<T>> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while scanning class files", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException("Failed to scan class files", cause);
+        }
+    }
+
+
+    private static final class ClassFile {
+
+        private final File file;
+
+        private final String className;
+
+        private ClassFile(File file, String className) {
+            this.file = file;
+            this.className = className;
+        }
+    }
+
+
+    private static class ScannerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "dubbo-scanner-" + this.counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
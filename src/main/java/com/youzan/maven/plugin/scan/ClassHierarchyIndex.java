@@ -0,0 +1,141 @@
+package com.youzan.maven.plugin.scan;
+
+import com.youzan.maven.plugin.annotation.ClassMetadata;
+import com.youzan.maven.plugin.annotation.classreading.SimpleMetadataReaderFactory;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Super class and interface names of the classes of a scan, read from bytecode.
+ * <p>Every class parsed by the scan is registered as it is read. Classes that were
+ * not parsed, e.g. base classes skipped by the pre-filter or declared in another
+ * jar, are read on first use through the {@link SimpleMetadataReaderFactory} by
+ * class name, never loaded and without introspecting their annotations; each class
+ * is read at most once per scan no matter how many services extend it.
+ * <p>Types of the JDK and of the Spring Framework are never service interfaces and
+ * their hierarchies are not followed.
+ * <p>The index is not bounded: it keeps a node for every class of the scan and every
+ * super class read on demand until the scan is done. A node only holds the super class
+ * and interface names, shared through the scan's class name table, so it costs a few
+ * dozen bytes per class; evicting nodes would save little and read classes again.
+ * <p>Instances are thread-safe.
+ *
+ * @author yiji@apache.org
+ */
+public class ClassHierarchyIndex {
+
+    private static final String[] IGNORED_PACKAGES = {"java.", "javax.", "org.springframework."};
+
+    private static final Node UNKNOWN = new Node(null, new String[0]);
+
+    private final ConcurrentMap<String, Node> nodes = new ConcurrentHashMap<String, Node>(1024);
+
+    private final SimpleMetadataReaderFactory metadataReaderFactory;
+
+    private final AtomicInteger readOnDemand = new AtomicInteger();
+
+
+    /**
+     * @param metadataReaderFactory the factory to read classes that were not registered, or
+     *                              {@code null} to only use registered classes
+     */
+    public ClassHierarchyIndex(SimpleMetadataReaderFactory metadataReaderFactory) {
+        this.metadataReaderFactory = metadataReaderFactory;
+    }
+
+
+    /**
+     * Register a class read by the scan.
+     */
+    public void register(ClassMetadata metadata) {
+        this.nodes.put(metadata.getClassName(), new Node(metadata.getSuperClassName(), metadata.getInterfaceNames()));
+    }
+
+    /**
+     * Return the interface a class exports as a service: the first interface declared by
+     * the class, or else by the closest super class, that is not a JDK or Spring type.
+     *
+     * @return the interface name, or {@code null} if there is none
+     */
+    public String findServiceInterface(String className) {
+        Set<String> visited = new HashSet<String>(8);
+        String current = className;
+        while (current != null && !isIgnored(current) && visited.add(current)) {
+            Node node = getNode(current);
+            for (String interfaceName : node.interfaceNames) {
+                if (!isIgnored(interfaceName)) {
+                    return interfaceName;
+                }
+            }
+            current = node.superClassName;
+        }
+        return null;
+    }
+
+    /**
+     * The number of classes indexed, the ones that could not be read included.
+     */
+    public int size() {
+        return this.nodes.size();
+    }
+
+    /**
+     * The number of classes read on demand because the scan did not parse them.
+     */
+    public int getReadOnDemand() {
+        return this.readOnDemand.get();
+    }
+
+    public static boolean isIgnored(String className) {
+        for (String ignored : IGNORED_PACKAGES) {
+            if (className.startsWith(ignored)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Node getNode(String className) {
+        Node node = this.nodes.get(className);
+        if (node == null) {
+            node = readNode(className);
+            Node existing = this.nodes.putIfAbsent(className, node);
+            if (existing != null) {
+                node = existing;
+            }
+        }
+        return node;
+    }
+
+    private Node readNode(String className) {
+        if (this.metadataReaderFactory == null) {
+            return UNKNOWN;
+        }
+        try {
+            ClassMetadata metadata = this.metadataReaderFactory.getClassMetadata(className);
+            this.readOnDemand.incrementAndGet();
+            return new Node(metadata.getSuperClassName(), metadata.getInterfaceNames());
+        } catch (IOException ex) {
+            return UNKNOWN;
+        }
+    }
+
+
+    private static final class Node {
+
+        private final String superClassName;
+
+        private final String[] interfaceNames;
+
+        Node(String superClassName, String[] interfaceNames) {
+            this.superClassName = superClassName;
+            this.interfaceNames = interfaceNames;
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.youzan.maven.plugin.scan;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Hands the class entries of a jar file to a {@link JarEntryHandler}, reading them
+ * straight from the archive without extracting it.
+ * <p>{@link ZipFile} locates entries through the central directory, which the JDK
+ * maps into memory where supported, so entries outside the scanned packages are
+ * never inflated.
+ *
+ * @author yiji@apache.org
+ */
+public class JarClassScanner {
+
+    private static final String CLASS_FILE_SUFFIX = ".class";
+
+    private final PackageFilter packageFilter;
+
+
+    /**
+     * Create a new {@code JarClassScanner} restricted to the given packages.
+     *
+     * @param packages the class name prefixes to scan, e.g. {@code com.youzan},
+     *                 {@code null} or empty to scan all classes
+     */
+    public JarClassScanner(String[] packages) {
+        this.packageFilter = new PackageFilter(packages);
+    }
+
+
+    /**
+     * Scan the class entries of the given jar.
+     *
+     * @param jar     the jar file
+     * @param handler the handler to invoke for every class entry
+     * @return the non-null handler results, in entry name order
+     * @throws IOException if the jar could not be read
+     */
+    public <T> List<T> scan(File jar, JarEntryHandler<T> handler) throws IOException {
+        ZipFile zipFile = new ZipFile(jar);
+        try {
+            List<String> names = new ArrayList<String>();
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (!entry.isDirectory() && name.endsWith(CLASS_FILE_SUFFIX) && this.packageFilter.includes(name)) {
+                    names.add(name);
+                }
+            }
+            Collections.sort(names);
+
+            List<T> results = new ArrayList<T>();
+            for (String name : names) {
+                ZipEntry entry = zipFile.getEntry(name);
+                T result = handler.handle(jar, PackageFilter.toClassName(name), read(zipFile, entry));
+                if (result != null) {
+                    results.add(result);
+                }
+            }
+            return results;
+        } finally {
+            zipFile.close();
+        }
+    }
+
+    private static byte[] read(ZipFile zipFile, ZipEntry entry) throws IOException {
+        long size = entry.getSize();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Class entry '" + entry.getName() + "' is too large");
+        }
+        InputStream is = zipFile.getInputStream(entry);
+        try {
+            if (size < 0) {
+                return readFully(is);
+            }
+            byte[] bytes = new byte[(int) size];
+            int offset = 0;
+            while (offset < bytes.length) {
+                int read = is.read(bytes, offset, bytes.length - offset);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of class entry '" + entry.getName() + "'");
+                }
+                offset += read;
+            }
+            return bytes;
+        } finally {
+            is.close();
+        }
+    }
+
+    private static byte[] readFully(InputStream is) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = is.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,24 @@
+package com.youzan.maven.plugin.scan;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Callback invoked by {@link JarClassScanner} for every class entry of a jar.
+ *
+ * @author yiji@apache.org
+ */
+public interface JarEntryHandler<T> {
+
+    /**
+     * Process a single class entry.
+     *
+     * @param jar       the jar file containing the entry
+     * @param className the class name derived from the entry name
+     * @param bytes     the content of the class entry
+     * @return the result for this entry, or {@code null} if the entry should be ignored
+     * @throws IOException if the class could not be processed
+     */
+    T handle(File jar, String className, byte[] bytes) throws IOException;
+
+}
@@ -0,0 +1,83 @@
+package com.youzan.maven.plugin.scan;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Matches resource paths, e.g. {@code com/youzan/Foo.class}, against package name
+ * prefixes, e.g. {@code com.youzan}, keeping the plain {@code startsWith} semantics
+ * of class name matching.
+ *
+ * @author yiji@apache.org
+ */
+class PackageFilter {
+
+    private final String[] pathPrefixes;
+
+
+    /**
+     * @param packages the class name prefixes to match, {@code null} or empty to match all classes
+     */
+    PackageFilter(String[] packages) {
+        this.pathPrefixes = toPathPrefixes(packages);
+    }
+
+    private static String[] toPathPrefixes(String[] packages) {
+        if (packages == null) {
+            return new String[0];
+        }
+        List<String> prefixes = new ArrayList<String>(packages.length);
+        for (String name : packages) {
+            String prefix = name.trim();
+            if (prefix.isEmpty()) {
+                // the default package matches every class
+                return new String[0];
+            }
+            prefixes.add(prefix.replace('.', '/'));
+        }
+        return prefixes.toArray(new String[prefixes.size()]);
+    }
+
+
+    /**
+     * Whether the given directory is an ancestor of, or lies within, one of the packages.
+     *
+     * @param directoryPath the directory path relative to the class path root, without trailing slash
+     */
+    boolean mayContain(String directoryPath) {
+        if (this.pathPrefixes.length == 0) {
+            return true;
+        }
+        for (String prefix : this.pathPrefixes) {
+            if (directoryPath.startsWith(prefix) || prefix.startsWith(directoryPath + "/")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether the class file at the given path belongs to one of the packages.
+     *
+     * @param classFilePath the class file path relative to the class path root
+     */
+    boolean includes(String classFilePath) {
+        if (this.pathPrefixes.length == 0) {
+            return true;
+        }
+        for (String prefix : this.pathPrefixes) {
+            if (classFilePath.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Convert a class file path, e.g. {@code com/youzan/Foo.class}, to a class name.
+     */
+    static String toClassName(String classFilePath) {
+        return classFilePath.substring(0, classFilePath.length() - ".class".length()).replace('/', '.');
+    }
+
+}
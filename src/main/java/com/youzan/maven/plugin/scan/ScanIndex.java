@@ -0,0 +1,285 @@
+package com.youzan.maven.plugin.scan;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent index of the class files seen by the previous scan, keyed by class name.
+ * <p>Every record holds the size, modification time and content digest of a class file
+ * together with the {@link ServiceDescriptor} extracted from it, if any. A class file whose
+ * size and modification time are unchanged, or whose content digest is unchanged,
+ * does not need to be parsed again.
+ * <p>An index is only reused when its key matches, callers should derive the key from
+ * everything that influences the extracted entries, e.g. the annotation types, the
+ * scanned packages and a {@link #fingerprint(Collection) fingerprint} of the class path.
+ * Annotation types declared by the scanned classes themselves are recorded as such,
+ * a change to one of them may change the composed annotations of any other class, see
+ * {@link #findModifiedAnnotationType(File)}.
+ *
+ * @author yiji@apache.org
+ */
+public class ScanIndex implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String DIGEST_ALGORITHM = "SHA-1";
+
+    private final String key;
+
+    private final ConcurrentHashMap<String, Record> records = new ConcurrentHashMap<String, Record>();
+
+
+    public ScanIndex(String key) {
+        this.key = key;
+    }
+
+
+    /**
+     * Load the index stored in the given file.
+     *
+     * @param file the index file
+     * @param key  the expected index key
+     * @return the stored index, or an empty index if the file does not exist,
+     * cannot be read or was written with a different key
+     */
+    public static ScanIndex load(File file, String key) {
+        ScanIndex index = loadIfPresent(file, key);
+        return (index != null ? index : new ScanIndex(key));
+    }
+
+    /**
+     * Load the index stored in the given file.
+     *
+     * @param file the index file
+     * @param key  the expected index key
+     * @return the stored index, or {@code null} if the file does not exist,
+     * cannot be read or was written with a different key
+     */
+    public static ScanIndex loadIfPresent(File file, String key) {
+        if (file == null || !file.isFile()) {
+            return null;
+        }
+        try {
+            ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                Object stored = in.readObject();
+                if (stored instanceof ScanIndex && key.equals(((ScanIndex) stored).key)) {
+                    return (ScanIndex) stored;
+                }
+            } finally {
+                in.close();
+            }
+        } catch (Exception ignored) {
+            // stale or corrupt index, start over
+        }
+        return null;
+    }
+
+    /**
+     * Store this index in the given file, replacing any previous content.
+     */
+    public void save(File file) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Failed to create directory '" + parent + "'");
+        }
+        ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeObject(this);
+        } finally {
+            out.close();
+        }
+    }
+
+    public String getKey() {
+        return this.key;
+    }
+
+    public Record get(String className) {
+        return this.records.get(className);
+    }
+
+    public void put(String className, Record record) {
+        this.records.put(className, record);
+    }
+
+    public int size() {
+        return this.records.size();
+    }
+
+    public Map<String, Record> getRecords() {
+        return this.records;
+    }
+
+    /**
+     * Return the service entries of all records, ordered by class name.
+     */
+    public List<ServiceDescriptor> getServiceEntries() {
+        List<String> classNames = new ArrayList<String>(this.records.keySet());
+        Collections.sort(classNames);
+        List<ServiceDescriptor> entries = new ArrayList<ServiceDescriptor>();
+        for (String className : classNames) {
+            ServiceDescriptor entry = this.records.get(className).getEntry();
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Compute the hex encoded digest of a whole file, e.g. a dependency jar.
+     */
+    public static String digest(File file) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            InputStream is = new FileInputStream(file);
+            try {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = is.read(buffer)) >= 0) {
+                    digest.update(buffer, 0, read);
+                }
+            } finally {
+                is.close();
+            }
+            return toHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(DIGEST_ALGORITHM + " is not supported", e);
+        }
+    }
+
+    /**
+     * Compute the hex encoded digest of the path, size and modification time of the given
+     * files, e.g. the dependency jars on the class path. Missing files are included by path.
+     */
+    public static String fingerprint(Collection<File> files) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            for (File file : files) {
+                digest.update((file.getAbsolutePath() + "|" + file.length() + "|" + file.lastModified() + "\n")
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+            return toHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(DIGEST_ALGORITHM + " is not supported", e);
+        }
+    }
+
+    /**
+     * Compute the content digest stored in a {@link Record}.
+     */
+    public static byte[] digest(byte[] bytes, int offset, int length) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            digest.update(bytes, offset, length);
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(DIGEST_ALGORITHM + " is not supported", e);
+        }
+    }
+
+
+    /**
+     * Return the first recorded annotation type whose class file below the given directory
+     * was modified or removed since the index was written, if any. Classes carrying a composed
+     * annotation do not change with it, so no record of this index can be reused then.
+     *
+     * @param directory the classes directory the index was built from
+     * @return the class name of the annotation type, or {@code null} if all are unmodified
+     */
+    public String findModifiedAnnotationType(File directory) {
+        for (Map.Entry<String, Record> entry : this.records.entrySet()) {
+            Record record = entry.getValue();
+            if (record.isAnnotationType()) {
+                File file = new File(directory, entry.getKey().replace('.', '/') + ".class");
+                if (!file.isFile() || !record.isUnmodified(file.length(), file.lastModified())) {
+                    return entry.getKey();
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Fingerprint of a single class file and the service entry extracted from it.
+     */
+    public static final class Record implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long size;
+
+        private final long lastModified;
+
+        private final byte[] digest;
+
+        private final ServiceDescriptor entry;
+
+        private final boolean annotationType;
+
+        public Record(long size, long lastModified, byte[] digest, ServiceDescriptor entry) {
+            this(size, lastModified, digest, entry, false);
+        }
+
+        /**
+         * @param annotationType whether the class file declares an annotation type
+         */
+        public Record(long size, long lastModified, byte[] digest, ServiceDescriptor entry, boolean annotationType) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.digest = digest;
+            this.entry = entry;
+            this.annotationType = annotationType;
+        }
+
+        /**
+         * Whether the file still has the recorded size and modification time.
+         */
+        public boolean isUnmodified(long size, long lastModified) {
+            return this.size == size && this.lastModified == lastModified;
+        }
+
+        public boolean hasDigest(byte[] digest) {
+            return MessageDigest.isEqual(this.digest, digest);
+        }
+
+        public boolean isAnnotationType() {
+            return this.annotationType;
+        }
+
+        /**
+         * Return the service entry extracted from the class file, or {@code null}
+         * if the class does not expose a service.
+         */
+        public ServiceDescriptor getEntry() {
+            return this.entry;
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.youzan.maven.plugin.scan;
+
+import com.youzan.maven.plugin.annotation.AnnotationMetadata;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Matches a class against the service annotation types and scan packages of an
+ * execution, compiled once per execution.
+ * <p>The annotation types visited on a class, present or meta-present, are looked up
+ * in a hash table of the target types in a single pass, instead of asking the metadata
+ * whether it is annotated with each target in turn. The matches are returned in the
+ * configured order, so the caller reads the attributes of each matched type exactly once.
+ * <p>Instances are immutable and thread-safe.
+ *
+ * @author yiji@apache.org
+ */
+public class ServiceAnnotationMatcher {
+
+    private static final String JAVA_LANG_ANNOTATION_PACKAGE = "java.lang.annotation.";
+
+    private final String[] annotationNames;
+
+    private final Map<String, Integer> indexes;
+
+    private final String[] packages;
+
+
+    /**
+     * @param annotationNames the service annotation types, in the order matches are returned
+     * @param packages        the class name prefixes a service must start with
+     */
+    public ServiceAnnotationMatcher(String[] annotationNames, String[] packages) {
+        this.annotationNames = annotationNames.clone();
+        this.indexes = new HashMap<String, Integer>(annotationNames.length * 2);
+        for (int i = 0; i < annotationNames.length; i++) {
+            // never reported as annotated, see AnnotationMetadata#isAnnotated
+            if (!annotationNames[i].startsWith(JAVA_LANG_ANNOTATION_PACKAGE) && !this.indexes.containsKey(annotationNames[i])) {
+                this.indexes.put(annotationNames[i], i);
+            }
+        }
+        this.packages = packages.clone();
+    }
+
+
+    /**
+     * Return the service annotation types the given class is annotated with.
+     *
+     * @return the matched types in the configured order, or {@code null} if the class
+     * is outside the scan packages or carries none of the types
+     */
+    public String[] match(AnnotationMetadata metadata) {
+        if (this.indexes.isEmpty() || !isInPackages(metadata.getClassName())) {
+            return null;
+        }
+        boolean[] matched = null;
+        int count = 0;
+        for (String type : metadata.getAnnotatedTypes()) {
+            Integer index = this.indexes.get(type);
+            if (index != null) {
+                if (matched == null) {
+                    matched = new boolean[this.annotationNames.length];
+                }
+                matched[index] = true;
+                count++;
+            }
+        }
+        if (matched == null) {
+            return null;
+        }
+        String[] result = new String[count];
+        for (int i = 0, j = 0; j < count; i++) {
+            if (matched[i]) {
+                result[j++] = this.annotationNames[i];
+            }
+        }
+        return result;
+    }
+
+    private boolean isInPackages(String className) {
+        for (String scanPackage : this.packages) {
+            if (className.startsWith(scanPackage)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,138 @@
+package com.youzan.maven.plugin.scan;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable service information extracted from a single annotated class, detached
+ * from the ASM visitor that produced it so the visitor graph can be collected right
+ * after the class is read, and so it can be kept in a {@link ScanIndex}.
+ * <p>Only what the descriptor needs is retained: the class name and, per service
+ * annotation, the attributes in declaration order as flat arrays. Values are reduced to {@code String}, {@code String[]}, boxed
+ * primitives or {@code Boolean}; class and enum values are kept by name so that
+ * no {@code Class} reference, and with it no class loader, is retained.
+ * <p>Attribute values are stored as read from the class file, placeholders such as
+ * {@code ${dubbo.group}} are resolved when the descriptor is generated, since the
+ * properties may differ between builds and environments. The exported interface is
+ * not kept either, it depends on super classes that may change, or come from another
+ * jar, without the class itself changing and is looked up in the
+ * {@link ClassHierarchyIndex} of the build that generates the descriptor.
+ *
+ * @author yiji@apache.org
+ */
+public final class ServiceDescriptor implements Serializable {
+
+    private static final long serialVersionUID = 2L;
+
+    private static final String[] NO_NAMES = new String[0];
+
+    private final String className;
+
+    private final String[] annotationTypes;
+
+    private final String[][] attributeNames;
+
+    private final Object[][] attributeValues;
+
+
+    /**
+     * Create a new descriptor.
+     *
+     * @param className   the fully qualified name of the annotated class
+     * @param annotations the attributes per service annotation type, in registration order
+     */
+    public ServiceDescriptor(String className, Map<String, Map<String, Object>> annotations) {
+        this.className = className;
+        this.annotationTypes = annotations.keySet().toArray(new String[annotations.size()]);
+        this.attributeNames = new String[this.annotationTypes.length][];
+        this.attributeValues = new Object[this.annotationTypes.length][];
+
+        int index = 0;
+        for (Map<String, Object> attributes : annotations.values()) {
+            String[] names = (attributes.isEmpty() ? NO_NAMES : new String[attributes.size()]);
+            Object[] values = new Object[attributes.size()];
+            int i = 0;
+            for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+                names[i] = attribute.getKey();
+                values[i] = compact(attribute.getValue());
+                i++;
+            }
+            this.attributeNames[index] = names;
+            this.attributeValues[index] = values;
+            index++;
+        }
+    }
+
+
+    public String getClassName() {
+        return this.className;
+    }
+
+    /**
+     * Return the service annotation types present on the class, in registration order.
+     */
+    public List<String> getAnnotationTypes() {
+        return Collections.unmodifiableList(Arrays.asList(this.annotationTypes));
+    }
+
+    /**
+     * Return a copy of the attributes of the given annotation type, in declaration
+     * order, or {@code null} if not present. Array values are shared and must not
+     * be modified.
+     */
+    public Map<String, Object> getAnnotationAttributes(String annotationName) {
+        for (int index = 0; index < this.annotationTypes.length; index++) {
+            if (this.annotationTypes[index].equals(annotationName)) {
+                String[] names = this.attributeNames[index];
+                Object[] values = this.attributeValues[index];
+                Map<String, Object> attributes = new LinkedHashMap<String, Object>(names.length * 2);
+                for (int i = 0; i < names.length; i++) {
+                    attributes.put(names[i], values[i]);
+                }
+                return Collections.unmodifiableMap(attributes);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reduce an attribute value to a type the descriptor can hold without references
+     * to classes or annotation metadata, rendering anything else as its string form.
+     */
+    private static Object compact(Object value) {
+        if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean) {
+            return value;
+        }
+        if (value instanceof String[]) {
+            return ((String[]) value).clone();
+        }
+        if (value instanceof Class) {
+            return ((Class<?>) value).getName();
+        }
+        if (value instanceof Enum) {
+            return ((Enum<?>) value).name();
+        }
+        if (value instanceof Class[]) {
+            Class<?>[] classes = (Class<?>[]) value;
+            String[] names = new String[classes.length];
+            for (int i = 0; i < classes.length; i++) {
+                names[i] = classes[i].getName();
+            }
+            return names;
+        }
+        if (value instanceof Enum[]) {
+            Enum<?>[] constants = (Enum<?>[]) value;
+            String[] names = new String[constants.length];
+            for (int i = 0; i < constants.length; i++) {
+                names[i] = constants[i].name();
+            }
+            return names;
+        }
+        return String.valueOf(value);
+    }
+
+}
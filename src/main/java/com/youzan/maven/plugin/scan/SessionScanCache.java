@@ -0,0 +1,118 @@
+package com.youzan.maven.plugin.scan;
+
+import com.youzan.maven.plugin.annotation.classreading.MetaAnnotationCache;
+import com.youzan.maven.plugin.property.PropertySource;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Scan state shared by all executions of the plugin within one build session, e.g. all
+ * modules of a reactor build.
+ * <p>The plugin class realm, and with it this class, is shared by the executions of a
+ * session, so every module execution can reuse what previous executions computed:
+ * meta-annotation graphs, configuration files, class directory indexes and the services
+ * found in dependency jars.
+ * <p>Only the lookup of the per-session instance is synchronized, the cached state itself
+ * lives in concurrent maps, so executions of a parallel ({@code mvn -T}) build do not block
+ * each other. Sessions are held weakly and their cache is released with them.
+ *
+ * @author yiji@apache.org
+ */
+public final class SessionScanCache {
+
+    private static final Map<Object, SessionScanCache> CACHES = new WeakHashMap<Object, SessionScanCache>();
+
+    private final MetaAnnotationCache metaAnnotationCache = new MetaAnnotationCache();
+
+    private final ConcurrentMap<String, PropertySource> propertyFiles = new ConcurrentHashMap<String, PropertySource>();
+
+    private final ConcurrentMap<String, ScanIndex> directoryIndexes = new ConcurrentHashMap<String, ScanIndex>();
+
+    private final ConcurrentMap<String, List<ServiceDescriptor>> jarEntries = new ConcurrentHashMap<String, List<ServiceDescriptor>>();
+
+
+    private SessionScanCache() {
+    }
+
+
+    /**
+     * Return the cache of the given session, creating it on first access.
+     *
+     * @param session an object identifying the build session, shared by all its executions
+     */
+    public static SessionScanCache forSession(Object session) {
+        synchronized (CACHES) {
+            SessionScanCache cache = CACHES.get(session);
+            if (cache == null) {
+                cache = new SessionScanCache();
+                CACHES.put(session, cache);
+            }
+            return cache;
+        }
+    }
+
+
+    /**
+     * Return the meta-annotation cache used for reflective introspection. Bytecode-only
+     * caches depend on the class directory of a module and are not shared.
+     */
+    public MetaAnnotationCache getMetaAnnotationCache() {
+        return this.metaAnnotationCache;
+    }
+
+    /**
+     * Load a properties or YAML file, reusing the result for as long as the file is unchanged.
+     */
+    public PropertySource getPropertySource(File file) throws IOException {
+        String key = fileKey(file);
+        PropertySource source = this.propertyFiles.get(key);
+        if (source == null) {
+            source = PropertySource.load(file);
+            PropertySource existing = this.propertyFiles.putIfAbsent(key, source);
+            if (existing != null) {
+                source = existing;
+            }
+        }
+        return source;
+    }
+
+    /**
+     * Return the index of the last scan of a class directory in this session, if any.
+     *
+     * @param indexFile the index file of the class directory
+     * @param key       the expected index key
+     */
+    public ScanIndex getDirectoryIndex(File indexFile, String key) {
+        ScanIndex index = this.directoryIndexes.get(indexFile.getAbsolutePath());
+        return (index != null && key.equals(index.getKey()) ? index : null);
+    }
+
+    public void putDirectoryIndex(File indexFile, ScanIndex index) {
+        this.directoryIndexes.put(indexFile.getAbsolutePath(), index);
+    }
+
+    /**
+     * Return the services found in the given jar earlier in this session, if it is unchanged.
+     *
+     * @param jar the dependency jar
+     * @param key the scan settings the services were extracted with
+     */
+    public List<ServiceDescriptor> getJarEntries(File jar, String key) {
+        return this.jarEntries.get(key + "|" + fileKey(jar));
+    }
+
+    public void putJarEntries(File jar, String key, List<ServiceDescriptor> entries) {
+        this.jarEntries.put(key + "|" + fileKey(jar), entries);
+    }
+
+    private static String fileKey(File file) {
+        return file.getAbsolutePath() + "|" + file.length() + "|" + file.lastModified();
+    }
+
+}
@@ -0,0 +1,108 @@
+package com.youzan.maven.plugin.descriptor;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Round trips of {@link BinaryDescriptorWriter} through {@link BinaryDescriptorReader}.
+ *
+ * @author yiji@apache.org
+ */
+public class BinaryDescriptorWriterTest {
+
+    @Test
+    public void readsBackServicesInOrder() throws IOException {
+        BinaryDescriptorWriter writer = new BinaryDescriptorWriter("demo-app");
+        Map<String, String> first = service("interfaceClass", "com.youzan.demo.api.DemoService",
+                "version", "1.0.0", "group", "分组");
+        Map<String, String> second = service("interfaceClass", "DefaultPackageService", "version", "1.0.0");
+        writer.addService(first);
+        writer.addService(second);
+
+        BinaryDescriptorReader reader = new BinaryDescriptorReader(writer.toByteArray());
+        assertEquals("demo-app", reader.getApplicationName());
+        assertEquals(Arrays.asList(first, second), reader.getServices());
+        assertEquals("DefaultPackageService", reader.getInterfaceName(1));
+    }
+
+    @Test
+    public void keepsRecordsAlignedAfterServiceWithoutInterface() throws IOException {
+        BinaryDescriptorWriter writer = new BinaryDescriptorWriter("demo-app");
+        writer.addService(service("interfaceClass", null, "version", "1.0.0"));
+        writer.addService(service("version", "2.0.0"));
+        Map<String, String> last = service("interfaceClass", "com.youzan.demo.api.DemoService", "group", "g");
+        writer.addService(last);
+
+        BinaryDescriptorReader reader = new BinaryDescriptorReader(writer.toByteArray());
+        assertEquals(3, reader.getServiceCount());
+        assertNull(reader.getInterfaceName(0));
+        assertEquals(service("version", "1.0.0"), reader.getService(0));
+        assertEquals(service("version", "2.0.0"), reader.getService(1));
+        assertEquals(last, reader.getService(2));
+    }
+
+    @Test
+    public void rejectsTooManyAttributes() throws IOException {
+        Map<String, String> attributes = service("interfaceClass", "com.youzan.demo.api.DemoService");
+        for (int i = 0; i <= BinaryDescriptorWriter.MAX_ATTRIBUTES; i++) {
+            attributes.put("key" + i, "value");
+        }
+        BinaryDescriptorWriter writer = new BinaryDescriptorWriter("demo-app");
+        try {
+            writer.addService(attributes);
+            fail("service with " + attributes.size() + " attributes accepted");
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("com.youzan.demo.api.DemoService"));
+        }
+        assertEquals(0, writer.getServiceCount());
+    }
+
+    @Test
+    public void rejectsTruncatedDescriptor() throws IOException {
+        BinaryDescriptorWriter writer = new BinaryDescriptorWriter("demo-app");
+        writer.addService(service("interfaceClass", "com.youzan.demo.api.DemoService", "version", "1.0.0"));
+        byte[] bytes = writer.toByteArray();
+        for (int length = 0; length < bytes.length; length++) {
+            try {
+                new BinaryDescriptorReader(Arrays.copyOf(bytes, length));
+                fail("descriptor truncated to " + length + " bytes accepted");
+            } catch (IOException expected) {
+                // corrupt or truncated
+            }
+        }
+    }
+
+    @Test
+    public void rejectsHalfMissingInterface() throws IOException {
+        BinaryDescriptorWriter writer = new BinaryDescriptorWriter("demo-app");
+        writer.addService(service("interfaceClass", "com.youzan.demo.api.DemoService"));
+        byte[] bytes = writer.toByteArray();
+        // the package index is the first int of the only record, right after the service count
+        int record = bytes.length - 10;
+        bytes[record] = bytes[record + 1] = bytes[record + 2] = bytes[record + 3] = (byte) 0xFF;
+        try {
+            new BinaryDescriptorReader(bytes);
+            fail("record without package index accepted");
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("interface indexes"));
+        }
+    }
+
+    private static Map<String, String> service(String... attributes) {
+        Map<String, String> service = new LinkedHashMap<String, String>();
+        for (int i = 0; i < attributes.length; i += 2) {
+            service.put(attributes[i], attributes[i + 1]);
+        }
+        return service;
+    }
+
+}
@@ -0,0 +1,312 @@
+package com.youzan.maven.plugin.descriptor;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+import com.esotericsoftware.yamlbeans.YamlConfig;
+import com.esotericsoftware.yamlbeans.YamlReader;
+import com.esotericsoftware.yamlbeans.YamlWriter;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the {@link ServiceDescriptorWriter} output with golden files holding what
+ * the yamlbeans {@code YamlWriter} wrote for the same document before the writer
+ * replaced it. Each golden file is checked against yamlbeans as well, so the files
+ * cannot drift from the reference.
+ *
+ * @author yiji@apache.org
+ */
+public class ServiceDescriptorWriterTest {
+
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+
+    @Test
+    public void writesPlainDocument() throws IOException {
+        Document document = new Document("demo-app", true)
+                .service("interfaceClass", "com.youzan.demo.api.DemoService", "version", "1.0.0")
+                .service("interfaceClass", "com.youzan.demo.api.OrderService", "group", "order", "protocol", "dubbo")
+                .port("dubbo", "20880")
+                .port("tether", "tether");
+        assertGolden("plain.yaml", document);
+    }
+
+    @Test
+    public void writesQuotesInValues() throws IOException {
+        Document document = new Document("it's-demo", false)
+                .service("interfaceClass", "com.youzan.demo.api.DemoService", "group", "it's \"quoted\"")
+                .service("interfaceClass", "com.youzan.demo.api.QuoteService", "version", "'", "tag", "\"")
+                .port("dubbo", "'20880'")
+                .port("rest", "#8080");
+        assertGolden("quotes.yaml", document);
+    }
+
+    @Test
+    public void foldsLongContentAroundWrapColumn() throws IOException {
+        assertGolden("wrap.yaml", wrapDocument(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void foldsStreamedContentAroundWrapColumn() throws IOException {
+        assertGolden("wrap.yaml", wrapDocument(0));
+    }
+
+    @Test
+    public void quotesNumericValues() throws IOException {
+        Document document = new Document("2048", true)
+                .service("interfaceClass", "com.youzan.demo.api.DemoService", "version", "1.0")
+                .port("dubbo", "20880")
+                .port("rest", "1.5e3")
+                .port("grpc", "-1")
+                .port("http", "0x1F");
+        assertGolden("numeric.yaml", document);
+    }
+
+    @Test
+    public void writesBooleanValuesPlain() throws IOException {
+        Document document = new Document("true", true)
+                .service("interfaceClass", "com.youzan.demo.api.DemoService", "extensionService", "true")
+                .port("dubbo", "false")
+                .port("rest", "yes")
+                .port("grpc", "null")
+                .port("http", "~");
+        assertGolden("boolean.yaml", document);
+    }
+
+    @Test
+    public void quotesEmptyValues() throws IOException {
+        Document document = new Document("", true)
+                .service("interfaceClass", "com.youzan.demo.api.DemoService", "group", "")
+                .port("dubbo", "")
+                .port("rest", " ");
+        assertGolden("empty.yaml", document);
+    }
+
+    @Test
+    public void writesEmptyPorts() throws IOException {
+        Document document = new Document("demo-app", true)
+                .service("interfaceClass", "com.youzan.demo.api.DemoService");
+        assertGolden("no-ports.yaml", document);
+    }
+
+    @Test
+    public void escapesNonAsciiText() throws IOException {
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i < 12; i++) {
+            description.append("订单服务 commande n° ").append(i).append(' ');
+        }
+        Document document = new Document("有赞-démo", true)
+                .service("interfaceClass", "com.youzan.demo.api.DemoService", "group", "分组", "version", "1.0.0")
+                .service("interfaceClass", "com.youzan.demo.api.OrderService", "description", description.toString())
+                .port("dubbo", "20880")
+                .port("tether", "端口");
+        assertGolden("non-ascii.yaml", document);
+    }
+
+    @Test
+    public void splitsOversizedListDeterministically() throws IOException {
+        Document document = new Document("demo-app", true, 4096, ContentEncoding.AUTO);
+        Random random = new Random(42);
+        for (int i = 0; i < 300; i++) {
+            document.service("interfaceClass", "com.youzan.demo.api.Service" + i,
+                    "version", Long.toHexString(random.nextLong()), "group", Long.toString(random.nextLong(), 36));
+        }
+        document.port("dubbo", "20880");
+
+        String output = write(document);
+        assertEquals("same services, same documents", output, write(document));
+
+        List<Map<String, Object>> shards = readDocuments(output);
+        assertTrue("expected several shards, got " + shards.size(), shards.size() > 1);
+        StringBuilder manifest = new StringBuilder();
+        for (int i = 0; i < shards.size(); i++) {
+            manifest.append(i > 0 ? "," : "").append(i == 0 ? "demo-app" : "demo-app-" + i);
+        }
+        List<Object> services = new ArrayList<Object>();
+        for (int i = 0; i < shards.size(); i++) {
+            Map<?, ?> metadata = (Map<?, ?>) shards.get(i).get("metadata");
+            Map<?, ?> annotations = (Map<?, ?>) metadata.get("annotations");
+            assertEquals(i == 0 ? "demo-app" : "demo-app-" + i, metadata.get("name"));
+            assertEquals(manifest.toString(), annotations.get("content-manifest"));
+            String content = (String) annotations.get("content");
+            assertTrue("shard " + i + " holds " + content.length() + " bytes", content.length() <= 4096);
+            ContentEncoding encoding = ContentEncoding.forName((String) annotations.get("content-encoding"));
+            services.addAll(JSON.parseArray(new String(encoding.decode(content), StandardCharsets.UTF_8)));
+        }
+        assertEquals(document.services, services);
+    }
+
+    @Test
+    public void keepsSmallListInOneDocument() throws IOException {
+        Document document = new Document("demo-app", true, 4096, ContentEncoding.AUTO)
+                .service("interfaceClass", "com.youzan.demo.api.DemoService", "version", "1.0.0")
+                .port("dubbo", "20880");
+        List<Map<String, Object>> documents = readDocuments(write(document));
+        assertEquals(1, documents.size());
+        Map<?, ?> annotations = (Map<?, ?>) ((Map<?, ?>) documents.get(0).get("metadata")).get("annotations");
+        assertNull(annotations.get("content-manifest"));
+        assertNull(annotations.get("content-encoding"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> readDocuments(String output) throws IOException {
+        YamlReader reader = new YamlReader(new StringReader(output));
+        List<Map<String, Object>> documents = new ArrayList<Map<String, Object>>();
+        for (Object document; (document = reader.read()) != null; ) {
+            documents.add((Map<String, Object>) document);
+        }
+        reader.close();
+        return documents;
+    }
+
+    private static Document wrapDocument(int contentLimit) {
+        Document document = new Document("demo-app", true, contentLimit);
+        StringBuilder padding = new StringBuilder();
+        for (int length = 0; length < 30; length++) {
+            document.service("interfaceClass", "com.youzan.demo.api.Service" + length,
+                    "description", padding + " a b  c " + padding + " ' d");
+            padding.append(length % 10);
+        }
+        return document.port("dubbo", "20880");
+    }
+
+    private static void assertGolden(String name, Document document) throws IOException {
+        String expected = readGolden(name);
+        assertEquals("yamlbeans output of " + name, expected, writeWithYamlbeans(document));
+        assertEquals(expected, write(document));
+    }
+
+    private static String readGolden(String name) throws IOException {
+        InputStream input = ServiceDescriptorWriterTest.class.getResourceAsStream("golden/" + name);
+        assertNotNull("missing golden file " + name, input);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int read; (read = input.read(buffer)) != -1; ) {
+                bytes.write(buffer, 0, read);
+            }
+            return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+            input.close();
+        }
+    }
+
+    private static String write(Document document) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ServiceDescriptorWriter writer = new ServiceDescriptorWriter(Channels.newChannel(bytes), null,
+                document.encoding, document.contentLimit);
+        try {
+            writer.writeHeader(document.name);
+            for (Map<String, String> service : document.services) {
+                writer.writeService(service);
+            }
+            writer.writeSpec(document.name, document.ports, document.headless);
+        } finally {
+            writer.close();
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write the document the way the plugin did before {@link ServiceDescriptorWriter}.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static String writeWithYamlbeans(Document document) throws IOException {
+        Map pair = new LinkedHashMap();
+        pair.put("kind", "Service");
+        pair.put("apiVersion", "v1");
+        Map metadata = new LinkedHashMap();
+        metadata.put("name", document.name);
+        pair.put("metadata", metadata);
+        Map spec = new LinkedHashMap();
+        pair.put("spec", spec);
+        Map selector = new LinkedHashMap();
+        selector.put("app", document.name);
+        spec.put("selector", selector);
+        List ports = new ArrayList();
+        for (String value : document.ports.values()) {
+            Map port = new LinkedHashMap();
+            port.put("protocol", "TCP");
+            port.put("port", value);
+            ports.add(port);
+        }
+        spec.put("ports", ports);
+        if (document.headless) {
+            spec.put("clusterIP", "None");
+        }
+        Map annotations = new LinkedHashMap();
+        annotations.put("content", JSON.toJSONString(document.services, SerializerFeature.QuoteFieldNames));
+        metadata.put("annotations", annotations);
+
+        StringWriter output = new StringWriter();
+        YamlWriter writer = new YamlWriter(output);
+        writer.getConfig().writeConfig.setWriteRootTags(false);
+        writer.getConfig().writeConfig.setWriteClassname(YamlConfig.WriteClassName.NEVER);
+        writer.write(pair);
+        writer.close();
+        return output.toString().replace(LINE_SEPARATOR, "\n");
+    }
+
+
+    private static class Document {
+
+        private final String name;
+
+        private final boolean headless;
+
+        private final int contentLimit;
+
+        private final ContentEncoding encoding;
+
+        private final List<Map<String, String>> services = new ArrayList<Map<String, String>>();
+
+        private final Map<String, String> ports = new LinkedHashMap<String, String>();
+
+        Document(String name, boolean headless) {
+            this(name, headless, Integer.MAX_VALUE);
+        }
+
+        Document(String name, boolean headless, int contentLimit) {
+            this(name, headless, contentLimit, ContentEncoding.IDENTITY);
+        }
+
+        Document(String name, boolean headless, int contentLimit, ContentEncoding encoding) {
+            this.name = name;
+            this.headless = headless;
+            this.contentLimit = contentLimit;
+            this.encoding = encoding;
+        }
+
+        Document service(String... attributes) {
+            Map<String, String> service = new LinkedHashMap<String, String>();
+            for (int i = 0; i < attributes.length; i += 2) {
+                service.put(attributes[i], attributes[i + 1]);
+            }
+            this.services.add(service);
+            return this;
+        }
+
+        Document port(String protocol, String port) {
+            this.ports.put(protocol, port);
+            return this;
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.youzan.maven.plugin.placeholder;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of {@link PlaceholderResolver}.
+ *
+ * @author yiji@apache.org
+ */
+public class PlaceholderResolverTest {
+
+    @Test
+    public void resolvesDefaults() {
+        PlaceholderResolver resolver = resolver("dubbo.group", "order");
+        assertEquals("order", resolver.resolve("${dubbo.group:default}"));
+        assertEquals("default", resolver.resolve("${dubbo.version:default}"));
+        assertEquals("", resolver.resolve("${dubbo.version:}"));
+        assertEquals("a:b", resolver.resolve("${dubbo.version:a:b}"));
+        assertNull(resolver.resolve("${dubbo.version}"));
+        assertEquals(Collections.singleton("dubbo.version"), resolver.getUnresolvedKeys());
+    }
+
+    @Test
+    public void keepsValuesWithoutPlaceholders() {
+        PlaceholderResolver resolver = resolver();
+        assertNull(resolver.resolve(null));
+        assertEquals("", resolver.resolve(""));
+        assertEquals("tether-$env", resolver.resolve("tether-$env"));
+        assertEquals("tether-${env", resolver.resolve("tether-${env"));
+    }
+
+    @Test
+    public void resolvesEmbeddedAndNestedPlaceholders() {
+        PlaceholderResolver resolver = resolver(
+                "env", "prod",
+                "app", "tether-${env}",
+                "dubbo.prod.group", "prod-group",
+                "dubbo.group", "group");
+        assertEquals("tether-prod-20880", resolver.resolve("tether-${env}-${port:20880}"));
+        assertEquals("tether-prod", resolver.getProperty("app"));
+        assertEquals("prod-group", resolver.resolve("${dubbo.${env}.group:${dubbo.group}}"));
+        assertEquals("group", resolver.resolve("${dubbo.${region:cn}.group:${dubbo.group}}"));
+        assertEquals("group", resolver.resolve("${dubbo.${region}.group:${dubbo.group}}"));
+        assertNull(resolver.resolve("${app}-${region}"));
+    }
+
+    @Test
+    public void looksUpEveryKeyOnce() {
+        final Map<String, Integer> lookups = new HashMap<String, Integer>();
+        final Map<String, String> properties = properties("env", "prod", "app", "tether-${env}");
+        PlaceholderResolver resolver = new PlaceholderResolver(new PlaceholderResolver.PropertyLookup() {
+            @Override
+            public String getProperty(String key) {
+                Integer count = lookups.get(key);
+                lookups.put(key, count == null ? 1 : count + 1);
+                return properties.get(key);
+            }
+        });
+        for (int i = 0; i < 3; i++) {
+            assertEquals("tether-prod", resolver.resolve("${app}"));
+            assertEquals("prod/tether-prod", resolver.resolve("${env}/${app}"));
+            assertNull(resolver.resolve("${missing}"));
+        }
+        assertEquals(Integer.valueOf(1), lookups.get("env"));
+        assertEquals(Integer.valueOf(1), lookups.get("app"));
+        assertEquals(Integer.valueOf(1), lookups.get("missing"));
+    }
+
+    @Test
+    public void rejectsCircularReferences() {
+        PlaceholderResolver resolver = resolver("a", "${b}", "b", "x-${c:${a}}", "self", "${self}");
+        assertCircular(resolver, "${a}");
+        assertCircular(resolver, "${self:default}");
+        try {
+            resolver.getProperty("b");
+            fail("circular reference of 'b' resolved");
+        } catch (IllegalArgumentException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("Circular placeholder reference"));
+        }
+    }
+
+    @Test
+    public void resolvesSameKeyTwiceWithoutCycle() {
+        PlaceholderResolver resolver = resolver("env", "prod", "app", "${env}-${env}");
+        assertEquals("prod-prod", resolver.resolve("${app}"));
+        assertEquals("prod-prod-prod", resolver.resolve("${env}-${app}"));
+    }
+
+    private static void assertCircular(PlaceholderResolver resolver, String value) {
+        try {
+            resolver.resolve(value);
+            fail("circular reference in '" + value + "' resolved");
+        } catch (IllegalArgumentException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().startsWith("Circular placeholder reference"));
+        }
+    }
+
+    private static PlaceholderResolver resolver(String... properties) {
+        final Map<String, String> values = properties(properties);
+        return new PlaceholderResolver(new PlaceholderResolver.PropertyLookup() {
+            @Override
+            public String getProperty(String key) {
+                return values.get(key);
+            }
+        });
+    }
+
+    private static Map<String, String> properties(String... properties) {
+        Map<String, String> values = new HashMap<String, String>();
+        for (int i = 0; i < properties.length; i += 2) {
+            values.put(properties[i], properties[i + 1]);
+        }
+        return values;
+    }
+
+}
@@ -0,0 +1,142 @@
+package com.youzan.maven.plugin.property;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests of {@link PropertySource} loading and {@link PropertySources} precedence.
+ *
+ * @author yiji@apache.org
+ */
+public class PropertySourcesTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test
+    public void flattensNestedYaml() throws IOException {
+        PropertySource source = PropertySource.load(file("application.yml",
+                "dubbo:",
+                "  application:",
+                "    name: tether-demo",
+                "  protocols:",
+                "    - name: dubbo",
+                "      port: 20880",
+                "    - name: rest",
+                "  registry:",
+                "tags:",
+                "  - blue",
+                "  - green"));
+
+        assertEquals("application.yml", source.getName());
+        Map<String, String> expected = new LinkedHashMap<String, String>();
+        expected.put("dubbo.application.name", "tether-demo");
+        expected.put("dubbo.protocols[0].name", "dubbo");
+        expected.put("dubbo.protocols[0].port", "20880");
+        expected.put("dubbo.protocols[1].name", "rest");
+        expected.put("dubbo.registry", "");
+        expected.put("tags[0]", "blue");
+        expected.put("tags[1]", "green");
+        assertEquals(expected, source.getProperties());
+    }
+
+    @Test
+    public void laterYamlDocumentsWin() throws IOException {
+        PropertySource source = PropertySource.load(file("application.yaml",
+                "app: tether-demo",
+                "dubbo:",
+                "  group: default",
+                "  version: 1.0.0",
+                "---",
+                "dubbo:",
+                "  group: blue",
+                "---",
+                "dubbo:",
+                "  group: green",
+                "  timeout: 3000"));
+
+        assertEquals("tether-demo", source.getProperty("app"));
+        assertEquals("green", source.getProperty("dubbo.group"));
+        assertEquals("1.0.0", source.getProperty("dubbo.version"));
+        assertEquals("3000", source.getProperty("dubbo.timeout"));
+    }
+
+    @Test
+    public void loadsPropertiesFiles() throws IOException {
+        PropertySource source = PropertySource.load(file("dubbo-prod.properties",
+                "app=tether-demo",
+                "dubbo.group=${env}-group"));
+        assertEquals("dubbo-prod.properties", source.getName());
+        assertEquals("tether-demo", source.getProperty("app"));
+        assertEquals("${env}-group", source.getProperty("dubbo.group"));
+    }
+
+    @Test
+    public void firstSourceWins() throws IOException {
+        PropertySource system = PropertySource.of("system properties", properties("a", "system"));
+        PropertySource user = PropertySource.of("user properties", properties("a", "user", "b", "user"));
+        PropertySource profile = PropertySource.load(file("dubbo-prod.properties",
+                "a=profile", "b=profile", "c=profile"));
+        PropertySource application = PropertySource.load(file("application.yml",
+                "a: application", "b: application", "c: application", "d: application"));
+        PropertySource project = PropertySource.of("project properties",
+                properties("a", "project", "b", "project", "c", "project", "d", "project", "e", "project"));
+
+        PropertySources sources = new PropertySources(Arrays.asList(system, user, profile, application, project));
+        assertEquals("system", sources.getProperty("a"));
+        assertEquals("user", sources.getProperty("b"));
+        assertEquals("profile", sources.getProperty("c"));
+        assertEquals("application", sources.getProperty("d"));
+        assertEquals("project", sources.getProperty("e"));
+        assertNull(sources.getProperty("f"));
+        assertEquals(5, sources.size());
+        assertEquals(Arrays.asList(system, user, profile, application, project), sources.getSources());
+    }
+
+    @Test
+    public void includesPropertyDefaults() {
+        Properties defaults = properties("a", "default", "b", "default");
+        Properties properties = new Properties(defaults);
+        properties.setProperty("a", "value");
+        PropertySource source = PropertySource.of("system properties", properties);
+        assertEquals("value", source.getProperty("a"));
+        assertEquals("default", source.getProperty("b"));
+    }
+
+    private File file(String name, String... lines) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        OutputStream out = Files.newOutputStream(file.toPath());
+        try {
+            for (String line : lines) {
+                out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static Properties properties(String... properties) {
+        Properties values = new Properties();
+        for (int i = 0; i < properties.length; i += 2) {
+            values.setProperty(properties[i], properties[i + 1]);
+        }
+        return values;
+    }
+
+}
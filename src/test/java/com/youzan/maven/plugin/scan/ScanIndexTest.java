@@ -0,0 +1,152 @@
+package com.youzan.maven.plugin.scan;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Reuse and invalidation of a stored {@link ScanIndex}.
+ *
+ * @author yiji@apache.org
+ */
+public class ScanIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test
+    public void reusesIndexWithSameKey() throws IOException {
+        File classes = folder.newFolder("classes");
+        File service = write(classes, "com.youzan.demo.DemoServiceImpl", classBytes(ScanIndexTest.class));
+        File indexFile = new File(folder.getRoot(), "dubbo-service.idx");
+        String key = "v3|" + ScanIndex.fingerprint(Collections.<File>emptyList());
+
+        ScanIndex index = new ScanIndex(key);
+        index.put("com.youzan.demo.DemoServiceImpl", record(service, entry("com.youzan.demo.DemoServiceImpl"), false));
+        index.save(indexFile);
+
+        ScanIndex loaded = ScanIndex.load(indexFile, key);
+        ScanIndex.Record record = loaded.get("com.youzan.demo.DemoServiceImpl");
+        assertNotNull(record);
+        assertTrue(record.isUnmodified(service.length(), service.lastModified()));
+        assertEquals("com.youzan.demo.DemoServiceImpl", record.getEntry().getClassName());
+        assertNull(loaded.findModifiedAnnotationType(classes));
+
+        assertEquals(0, ScanIndex.load(indexFile, key + "|other").size());
+        assertNull(ScanIndex.loadIfPresent(indexFile, key + "|other"));
+    }
+
+    @Test
+    public void fingerprintChangesWithClassPath() throws IOException {
+        File api = folder.newFile("demo-api.jar");
+        File common = folder.newFile("demo-common.jar");
+        assertTrue(api.setLastModified(1000000L));
+        String fingerprint = ScanIndex.fingerprint(Arrays.asList(api, common));
+        assertEquals(fingerprint, ScanIndex.fingerprint(Arrays.asList(api, common)));
+
+        assertFalse(fingerprint.equals(ScanIndex.fingerprint(Arrays.asList(common, api))));
+        assertFalse(fingerprint.equals(ScanIndex.fingerprint(Collections.singletonList(api))));
+        assertTrue(api.setLastModified(2000000L));
+        assertFalse(fingerprint.equals(ScanIndex.fingerprint(Arrays.asList(api, common))));
+    }
+
+    @Test
+    public void invalidatesIndexWhenAnnotationTypeChanges() throws IOException {
+        byte[] annotationBytes = classBytes(Marker.class);
+        byte[] classBytes = classBytes(ScanIndexTest.class);
+        assertTrue(AnnotationDescriptorFilter.isAnnotationType(annotationBytes, 0, annotationBytes.length));
+        assertFalse(AnnotationDescriptorFilter.isAnnotationType(classBytes, 0, classBytes.length));
+        assertFalse(AnnotationDescriptorFilter.isAnnotationType(new byte[]{1, 2, 3}, 0, 3));
+
+        File classes = folder.newFolder("classes");
+        File annotation = write(classes, "com.youzan.demo.DemoService", annotationBytes);
+        File service = write(classes, "com.youzan.demo.DemoServiceImpl", classBytes);
+        File indexFile = new File(folder.getRoot(), "dubbo-service.idx");
+        ScanIndex index = new ScanIndex("v1");
+        index.put("com.youzan.demo.DemoService", record(annotation, null, true));
+        index.put("com.youzan.demo.DemoServiceImpl", record(service, null, false));
+        index.save(indexFile);
+        assertNull(ScanIndex.load(indexFile, "v1").findModifiedAnnotationType(classes));
+
+        // a plain class does not invalidate the other records
+        assertTrue(service.setLastModified(service.lastModified() + 2000L));
+        assertNull(ScanIndex.load(indexFile, "v1").findModifiedAnnotationType(classes));
+
+        byte[] changed = Arrays.copyOf(annotationBytes, annotationBytes.length + 1);
+        write(classes, "com.youzan.demo.DemoService", changed);
+        assertEquals("com.youzan.demo.DemoService", ScanIndex.load(indexFile, "v1").findModifiedAnnotationType(classes));
+
+        assertTrue(annotation.delete());
+        assertEquals("com.youzan.demo.DemoService", ScanIndex.load(indexFile, "v1").findModifiedAnnotationType(classes));
+    }
+
+    private static ScanIndex.Record record(File file, ServiceDescriptor entry, boolean annotationType) throws IOException {
+        byte[] bytes = readFully(file.toURI().toURL().openStream());
+        return new ScanIndex.Record(file.length(), file.lastModified(), ScanIndex.digest(bytes, 0, bytes.length),
+                entry, annotationType);
+    }
+
+    private static ServiceDescriptor entry(String className) {
+        Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+        attributes.put("version", "1.0.0");
+        Map<String, Map<String, Object>> annotations = new LinkedHashMap<String, Map<String, Object>>();
+        annotations.put("com.youzan.api.rpc.annotation.Service", attributes);
+        return new ServiceDescriptor(className, annotations);
+    }
+
+    private static File write(File directory, String className, byte[] bytes) throws IOException {
+        File file = new File(directory, className.replace('.', '/') + ".class");
+        File parent = file.getParentFile();
+        assertTrue(parent.isDirectory() || parent.mkdirs());
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static byte[] classBytes(Class<?> type) throws IOException {
+        String name = type.getName();
+        InputStream input = type.getResourceAsStream(name.substring(name.lastIndexOf('.') + 1) + ".class");
+        assertNotNull("missing class file of " + name, input);
+        return readFully(input);
+    }
+
+    private static byte[] readFully(InputStream input) throws IOException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int read; (read = input.read(buffer)) != -1; ) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        } finally {
+            input.close();
+        }
+    }
+
+
+    private @interface Marker {
+    }
+
+}